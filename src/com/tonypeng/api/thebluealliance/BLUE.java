@@ -9,20 +9,17 @@
 
 package com.tonypeng.api.thebluealliance;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**
  * Provides an interface for the The Blue Alliance REST API.
@@ -58,25 +55,71 @@ public class BLUE {
 		}
 	}
 	
-	private static final String API_BASE = "http://www.thebluealliance.com/api/v2";
-	private static String X_TBA_APP_ID = "";
-	private static final JSONParser parser = new JSONParser();
+	/**
+	 * Wraps a <code>BLUEApiException</code> thrown where checked exceptions cannot be, such as
+	 * while a <code>Stream</code> is being consumed.
+	 */
+	@SuppressWarnings("serial")
+	public static class UncheckedBLUEApiException extends RuntimeException {
+		
+		/**
+		 * Creates an instance of UncheckedBLUEApiException.
+		 * 
+		 * @param cause The underlying <code>BLUEApiException</code>.
+		 */
+		public UncheckedBLUEApiException(BLUEApiException cause) {
+			super(cause.getMessage(), cause);
+		}
+		
+		/**
+		 * Gets the underlying <code>BLUEApiException</code>.
+		 * 
+		 * @return The underlying <code>BLUEApiException</code>.
+		 */
+		public BLUEApiException getCause() {
+			return (BLUEApiException)super.getCause();
+		}
+	}
+	
+	private static volatile BLUEClient defaultClient = BLUEClient.builder().build();
 	
 	/**
-	 * Sets the App ID for the application.
+	 * Sets the App ID for the application.  The default client's entity cache is carried over
+	 * to the rebuilt client, emptied of the models bound to the old one.
 	 * 
 	 * @param appId The application ID, in the format <team/person id>:<app description>:<version>
 	 */
-	public static void setAppId(String appId) {
-		X_TBA_APP_ID = appId;
+	public static synchronized void setAppId(String appId) {
+		BLUEClient client = defaultClient;
+		EntityCache entityCache = client.getEntityCache();
+		
+		if(entityCache != null) entityCache.release(client);
+		
+		defaultClient = client.toBuilder().appId(appId).entityCache(entityCache).build();
+	}
+	
+	/**
+	 * Gets the client used by the static methods of this class.
+	 * 
+	 * @return The default client.
+	 */
+	public static BLUEClient getDefaultClient() {
+		return defaultClient;
 	}
 	
-	private static boolean isInitialized() {
-		return X_TBA_APP_ID.length() > 0 && X_TBA_APP_ID.split(":").length == 3;
+	/**
+	 * Replaces the client used by the static methods of this class.
+	 * 
+	 * @param client The new default client.
+	 */
+	public static void setDefaultClient(BLUEClient client) {
+		if(client == null) throw new IllegalArgumentException("client");
+		
+		defaultClient = client;
 	}
 	
 	/**
-	 * Makes an API call to The Blue Alliance.
+	 * Makes an API call to The Blue Alliance using the default client.
 	 * 
 	 * @param apiReq The REST endpoint to make a request to.
 	 * @return The parsed JSON data.
@@ -84,67 +127,11 @@ public class BLUE {
 	public static Object api(String apiReq)
 		throws BLUEApiException
 	{
-		if(!isInitialized()) throw new BLUEApiException("BLUE was not initialized.", null);
-		
-		String endpoint = API_BASE + apiReq;
-		
-		URL endpointUrl;
-		
-		try {
-			endpointUrl = new URL(endpoint);
-		} catch (MalformedURLException e) {
-			throw new BLUEApiException("Malformed API request.", e);
-		}
-		
-		HttpURLConnection conn;
-		
-		try {
-			conn = (HttpURLConnection)endpointUrl.openConnection();
-		} catch (IOException e) {
-			throw new BLUEApiException("Could not open connection.", e);
-		}
-		
-		try {
-			conn.setRequestMethod("GET");
-		} catch (ProtocolException e) {
-			throw new BLUEApiException("Could not set the request type.", e);
-		}
-		
-		conn.setRequestProperty("X-TBA-App-Id", X_TBA_APP_ID);
-		conn.setUseCaches(false);
-        
-		InputStream is;
-		BufferedReader reader;
-		
-		try {
-			is = conn.getInputStream();
-			reader = new BufferedReader(new InputStreamReader(is));
-		} catch (IOException e) {
-			throw new BLUEApiException("Fatal! No internet!", e);
-		}
-		
-		String jsonString = "";
-		String respLine = "";
-		
-		try {
-			while((respLine = reader.readLine()) != null) {
-				jsonString += respLine;
-			}
-			
-			reader.close();
-		} catch (IOException e) {
-			throw new BLUEApiException("Error reading the response.", e);
-		}
-		
-		Object obj;
-		
-		try {
-			obj = parser.parse(jsonString);
-		} catch (ParseException e) {
-			throw new BLUEApiException("Malformed response received.", e);
-		}
-		
-		return obj;
+		return defaultClient.api(apiReq);
+	}
+	
+	static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
 	}
 	
 	/**
@@ -174,10 +161,12 @@ public class BLUE {
 			int _teamNumber;
 			String _key;
 			String _nickName;
+			BLUEClient _client;
 			
-			private Team(String website, String name, String locality,
+			Team(BLUEClient client, String website, String name, String locality,
 					String region, String country, String location, int teamNumber,
 					String key, String nickName) {
+				_client = client;
 				_website = website;
 				_name = name;
 				_locality = locality;
@@ -278,32 +267,132 @@ public class BLUE {
 						getRegion(), getCountry(), getLocation(), getTeamNumber(), getTeamKey(), getNickName());
 			}
 			
+			/**
+			 * Determines if <code>obj</code> is a <code>Team</code> with the same data as this one.
+			 */
+			public boolean equals(Object obj) {
+				if(obj == this) return true;
+				if(!(obj instanceof Team)) return false;
+				
+				Team other = (Team)obj;
+				
+				return _teamNumber == other._teamNumber && equal(_key, other._key) && equal(_website, other._website)
+						&& equal(_name, other._name) && equal(_locality, other._locality) && equal(_region, other._region)
+						&& equal(_country, other._country) && equal(_location, other._location) && equal(_nickName, other._nickName);
+			}
+			
+			/**
+			 * Gets the hash code of this <code>Team</code>.
+			 */
+			public int hashCode() {
+				return Arrays.hashCode(new Object[] { _key, _teamNumber, _nickName });
+			}
+			
 			/**
 			 * Gets the events attended by this team in <code>year</code>
 			 * @param year The requested year.
 			 * @return Events that this team attended in <code>year</code>
 			 * @throws BLUEApiException
 			 */
-			@SuppressWarnings("rawtypes")
 			public Events.Event[] getEvents(int year)
 				throws BLUEApiException
 			{
-				HashMap obj;
+				Events.Event[] events = _client.request("/team/" + _key + "/" + year, ModelReader.TEAM_EVENTS);
+				EntityCache cache = _client.getEntityCache();
+				
+				if(cache != null) {
+					for(int i = 0; i < events.length; i++) {
+						events[i] = cache.putEvent(events[i]);
+					}
+				}
 				
-                obj = (HashMap)BLUE.api("/team/" + _key + "/" + year);
+				return events;
+			}
+			
+			/**
+			 * Asynchronously gets the events attended by this team in <code>year</code>
+			 * @param year The requested year.
+			 * @return A future that completes with the events that this team attended in <code>year</code>
+			 */
+			public CompletableFuture<Events.Event[]> getEventsAsync(final int year) {
+				return _client.supplyAsync(new BLUEClient.ApiCall<Events.Event[]>() {
+					public Events.Event[] call() throws BLUEApiException {
+						return getEvents(year);
+					}
+				});
+			}
+			
+			/**
+			 * Gets this team's season in <code>year</code>: the events it attended, each with this
+			 * team's matches and the attending teams.  The event list is requested first, then every
+			 * event's matches and teams at once, keeping up to the client's bulk parallelism of requests in flight.
+			 * @param year The requested year.
+			 * @return This team's season in <code>year</code>
+			 * @throws BLUEApiException If the event list cannot be fetched.  Failures of individual events are reported on their entries.
+			 */
+			public TeamSeason getEventsWithMatches(int year)
+				throws BLUEApiException
+			{
+				return getEventsWithMatches(year, _client.getBulkParallelism());
+			}
+			
+			/**
+			 * Gets this team's season in <code>year</code>, keeping up to <code>parallelism</code> requests in flight.
+			 * @param year The requested year.
+			 * @param parallelism The maximum number of concurrent requests.
+			 * @return This team's season in <code>year</code>
+			 * @throws BLUEApiException If the event list cannot be fetched.  Failures of individual events are reported on their entries.
+			 */
+			public TeamSeason getEventsWithMatches(int year, int parallelism)
+				throws BLUEApiException
+			{
+				Events.Event[] events = getEvents(year);
+				List<String> keys = new ArrayList<String>(events.length * 2);
+				List<BLUEClient.ApiCall<Object[]>> calls = new ArrayList<BLUEClient.ApiCall<Object[]>>(events.length * 2);
 				
-				JSONArray arr = (JSONArray)obj.get("events");
+				for(final Events.Event event : events) {
+					keys.add(event.getEventKey() + "/matches");
+					calls.add(new BLUEClient.ApiCall<Object[]>() {
+						public Object[] call() throws BLUEApiException {
+							return event.getMatches();
+						}
+					});
+					
+					keys.add(event.getEventKey() + "/teams");
+					calls.add(new BLUEClient.ApiCall<Object[]>() {
+						public Object[] call() throws BLUEApiException {
+							return event.getTeams();
+						}
+					});
+				}
 				
-				Events.Event[] events = new Events.Event[arr.size()];
+				List<FetchResult<Object[]>> fetched = Fanout.run(_client.getExecutor(), parallelism, keys, calls);
+				List<TeamSeason.EventEntry> entries = new ArrayList<TeamSeason.EventEntry>(events.length);
 				
-				for(int i = 0; i < events.length; i++)
-				{
-					JSONObject event = (JSONObject)arr.get(i);
+				for(int i = 0; i < events.length; i++) {
+					FetchResult<Object[]> matches = fetched.get(i * 2);
+					FetchResult<Object[]> teams = fetched.get(i * 2 + 1);
 					
-					events[i] = Events.parseEvent(event);
+					entries.add(new TeamSeason.EventEntry(events[i],
+							matches.isSuccess() ? TeamSeason.filter((Matches.Match[])matches.getValue(), _key) : new Matches.Match[0],
+							teams.isSuccess() ? (Teams.Team[])teams.getValue() : new Teams.Team[0],
+							matches.isSuccess() ? teams.getException() : matches.getException()));
 				}
 				
-				return events;
+				return new TeamSeason(_key, year, entries);
+			}
+			
+			/**
+			 * Asynchronously gets this team's season in <code>year</code>
+			 * @param year The requested year.
+			 * @return A future that completes with this team's season in <code>year</code>
+			 */
+			public CompletableFuture<TeamSeason> getEventsWithMatchesAsync(final int year) {
+				return _client.supplyAsync(new BLUEClient.ApiCall<TeamSeason>() {
+					public TeamSeason call() throws BLUEApiException {
+						return getEventsWithMatches(year);
+					}
+				});
 			}
 		}
 		
@@ -313,17 +402,111 @@ public class BLUE {
 		 * @return The team with team number <code>teamNumber</code>, represented as a <code>Team</code>
 		 * @throws BLUEApiException
 		 */
-		@SuppressWarnings("rawtypes")
 		public static Team getTeam(int teamNumber)
 			throws BLUEApiException
+		{
+			return getTeam(defaultClient, teamNumber);
+		}
+		
+		/**
+		 * Gets the team with team number <code>teamNumber</code> using <code>client</code>
+		 * @param client The client to make the request with.
+		 * @param teamNumber The requested team number.
+		 * @return The team with team number <code>teamNumber</code>, represented as a <code>Team</code>
+		 * @throws BLUEApiException
+		 */
+		public static Team getTeam(BLUEClient client, int teamNumber)
+			throws BLUEApiException
 		{
 			String teamKey = "frc" + teamNumber;
+			EntityCache cache = client.getEntityCache();
+			
+			if(cache != null) {
+				Team team = cache.getTeam(teamKey);
+				
+				if(team != null) {
+					client.recordEntityHit("/team/{key}");
+					return team;
+				}
+				
+				return cache.putTeam(client.request("/team/" + teamKey, ModelReader.TEAM));
+			}
+			
+			return client.request("/team/" + teamKey, ModelReader.TEAM);
+		}
+		
+		/**
+		 * Gets the teams with the given team numbers, keeping up to the default client's
+		 * bulk parallelism of requests in flight.
+		 * @param teamNumbers The requested team numbers.  Repeated numbers are only requested once.
+		 * @return One result per requested team number, in the order given.
+		 * @throws BLUEApiException If interrupted while waiting.  Failures of individual teams are reported in their results.
+		 */
+		public static List<FetchResult<Team>> getTeams(int... teamNumbers)
+			throws BLUEApiException
+		{
+			return getTeams(defaultClient, defaultClient.getBulkParallelism(), teamNumbers);
+		}
+		
+		/**
+		 * Gets the teams with the given team numbers using <code>client</code>, keeping
+		 * up to <code>parallelism</code> requests in flight.
+		 * @param client The client to make the requests with.
+		 * @param parallelism The maximum number of concurrent requests.
+		 * @param teamNumbers The requested team numbers.  Repeated numbers are only requested once.
+		 * @return One result per requested team number, in the order given.
+		 * @throws BLUEApiException If interrupted while waiting.  Failures of individual teams are reported in their results.
+		 */
+		public static List<FetchResult<Team>> getTeams(final BLUEClient client, int parallelism, int... teamNumbers)
+			throws BLUEApiException
+		{
+			Map<Integer, Integer> unique = new LinkedHashMap<Integer, Integer>();
+			List<String> keys = new ArrayList<String>();
+			List<BLUEClient.ApiCall<Team>> calls = new ArrayList<BLUEClient.ApiCall<Team>>();
 			
-			HashMap obj;
+			for(final int teamNumber : teamNumbers) {
+				if(unique.containsKey(teamNumber)) continue;
+				
+				unique.put(teamNumber, calls.size());
+				keys.add("frc" + teamNumber);
+				calls.add(new BLUEClient.ApiCall<Team>() {
+					public Team call() throws BLUEApiException {
+						return getTeam(client, teamNumber);
+					}
+				});
+			}
 			
-            obj = (HashMap)BLUE.api("/team/" + teamKey);
+			List<FetchResult<Team>> fetched = Fanout.run(client.getExecutor(), parallelism, keys, calls);
+			List<FetchResult<Team>> results = new ArrayList<FetchResult<Team>>(teamNumbers.length);
+			
+			for(int teamNumber : teamNumbers) {
+				results.add(fetched.get(unique.get(teamNumber)));
+			}
 			
-			return parseTeam(obj);
+			return results;
+		}
+		
+		/**
+		 * Asynchronously gets the team with team number <code>teamNumber</code>
+		 * @param teamNumber The requested team number.
+		 * @return A future that completes with the team with team number <code>teamNumber</code>
+		 */
+		public static CompletableFuture<Team> getTeamAsync(int teamNumber) {
+			return getTeamAsync(defaultClient, teamNumber);
+		}
+		
+		/**
+		 * Asynchronously gets the team with team number <code>teamNumber</code> using <code>client</code>
+		 * @param client The client to make the request with.
+		 * @param teamNumber The requested team number.
+		 * @return A future that completes with the team with team number <code>teamNumber</code>
+		 */
+		public static CompletableFuture<Team> getTeamAsync(final BLUEClient client, final int teamNumber) {
+			return client.supplyAsync(new BLUEClient.ApiCall<Team>() {
+				public Team call() throws BLUEApiException {
+					return getTeam(client, teamNumber);
+				}
+			});
 		}
 		
 		/**
@@ -333,9 +516,25 @@ public class BLUE {
 		 */
 		@SuppressWarnings("rawtypes")
 		public static Team parseTeam(HashMap obj) {
-			return new Team((String)obj.get("website"), (String)obj.get("name"), (String)obj.get("locality"),
+			return parseTeam(defaultClient, obj);
+		}
+		
+		@SuppressWarnings("rawtypes")
+		static Team parseTeam(BLUEClient client, HashMap obj) {
+			if(!client.isInstrumented()) return mapTeam(client, obj);
+			
+			long start = System.nanoTime();
+			Team team = mapTeam(client, obj);
+			client.recordMapping("Team", System.nanoTime() - start);
+			
+			return team;
+		}
+		
+		@SuppressWarnings("rawtypes")
+		private static Team mapTeam(BLUEClient client, HashMap obj) {
+			return new Team(client, (String)obj.get("website"), (String)obj.get("name"), (String)obj.get("locality"),
 					(String)obj.get("region"), (String)obj.get("country_name"), (String)obj.get("location"),
-					(int)(long)(Long)obj.get("team_number"), (String)obj.get("key"), (String)obj.get("nickname"));
+					(int)(long)(Long)obj.get("team_number"), client.canonicalize((String)obj.get("key")), (String)obj.get("nickname"));
 		}
 	}
 	
@@ -358,10 +557,12 @@ public class BLUE {
 			private int _year;
 			private String _location;
 			private boolean _official;
+			private BLUEClient _client;
 			
-			private Event(String key, String name, String shortName,
+			Event(BLUEClient client, String key, String name, String shortName,
 					String eventCode, String eventType, int eventTypeCode, int year, String location,
 					boolean official) {
+				_client = client;
 				_key = key;
 				_name = name;
 				_shortName = shortName;
@@ -461,6 +662,27 @@ public class BLUE {
 						getEventCode(), getEventTypeString(), getEventType(), getYear(), getLocation(), (isOfficial() ? "true" : "false"));
 			}
 			
+			/**
+			 * Determines if <code>obj</code> is an <code>Event</code> with the same data as this one.
+			 */
+			public boolean equals(Object obj) {
+				if(obj == this) return true;
+				if(!(obj instanceof Event)) return false;
+				
+				Event other = (Event)obj;
+				
+				return _eventTypeCode == other._eventTypeCode && _year == other._year && _official == other._official
+						&& equal(_key, other._key) && equal(_name, other._name) && equal(_shortName, other._shortName)
+						&& equal(_eventCode, other._eventCode) && equal(_eventType, other._eventType) && equal(_location, other._location);
+			}
+			
+			/**
+			 * Gets the hash code of this <code>Event</code>.
+			 */
+			public int hashCode() {
+				return Arrays.hashCode(new Object[] { _key, _year, _name });
+			}
+			
 			/**
 			 * Gets a list of all teams that attended this event.
 			 * 
@@ -471,18 +693,52 @@ public class BLUE {
 				throws BLUEApiException
 			{
 				String eventKey = getEventKey();
+				EntityCache cache = _client.getEntityCache();
 				
-				JSONArray arr;
-				
-                arr = (JSONArray)BLUE.api("/event/" + eventKey + "/teams");
-				
-				Teams.Team[] teams = new Teams.Team[arr.size()];
-				
-				for(int i = 0; i < teams.length; i++) {
-					teams[i] = Teams.parseTeam((JSONObject)arr.get(i));
+				if(cache != null) {
+					Teams.Team[] teams = cache.getEventTeams(eventKey);
+					
+					if(teams != null) {
+						_client.recordEntityHit("/event/{key}/teams");
+						return teams;
+					}
+					
+					return cache.putEventTeams(eventKey, _client.request("/event/" + eventKey + "/teams", ModelReader.TEAMS));
 				}
 				
-				return teams;
+				return _client.request("/event/" + eventKey + "/teams", ModelReader.TEAMS);
+			}
+			
+			/**
+			 * Streams the teams that attended this event, reading each one from the response
+			 * only when it is needed.
+			 * 
+			 * <p>The stream must be closed, for example with try-with-resources, unless it is read
+			 * to the end.  A short-circuiting operation such as <code>findFirst()</code> or
+			 * <code>limit()</code> stops reading without releasing the connection, which is then held
+			 * until the stream is garbage collected.</p>
+			 * 
+			 * @return A stream of the teams that attended this event.
+			 * @throws BLUEApiException If the request fails.  Errors while reading the stream are
+			 *         thrown as <code>UncheckedBLUEApiException</code>.
+			 */
+			public Stream<Teams.Team> streamTeams()
+				throws BLUEApiException
+			{
+				return _client.stream("/event/" + getEventKey() + "/teams", ModelReader.TEAM_READER);
+			}
+			
+			/**
+			 * Asynchronously gets a list of all teams that attended this event.
+			 * 
+			 * @return A future that completes with the teams that attended this event.
+			 */
+			public CompletableFuture<Teams.Team[]> getTeamsAsync() {
+				return _client.supplyAsync(new BLUEClient.ApiCall<Teams.Team[]>() {
+					public Teams.Team[] call() throws BLUEApiException {
+						return getTeams();
+					}
+				});
 			}
 			
 			/**
@@ -495,19 +751,57 @@ public class BLUE {
 					throws BLUEApiException
 			{
 				String eventKey = getEventKey();
+				EntityCache cache = _client.getEntityCache();
 				
-				JSONArray arr;
-				
-                arr = (JSONArray)BLUE.api("/event/" + eventKey + "/matches");
+				if(cache != null) {
+					Matches.Match[] matches = cache.getEventMatches(eventKey);
+					
+					if(matches != null) {
+						_client.recordEntityHit("/event/{key}/matches");
+						return matches;
+					}
+				}
 				
-				Matches.Match[] matches = new Matches.Match[arr.size()];
+				Matches.Match[] matches = _client.request("/event/" + eventKey + "/matches", ModelReader.MATCHES);
+				MatchIndex index = _client.getMatchIndex();
 				
-				for(int i = 0; i < matches.length; i++) {
-					matches[i] = Matches.parseMatch((JSONObject)arr.get(i));
-				}
+				if(index != null) index.addAll(matches);
+				if(cache != null) cache.putEventMatches(eventKey, matches);
 				
 				return matches;
 			}
+			
+			/**
+			 * Streams the matches played at this event, reading each one from the response
+			 * only when it is needed.
+			 * 
+			 * <p>The stream must be closed, for example with try-with-resources, unless it is read
+			 * to the end.  A short-circuiting operation such as <code>findFirst()</code> or
+			 * <code>limit()</code> stops reading without releasing the connection, which is then held
+			 * until the stream is garbage collected.</p>
+			 * 
+			 * @return A stream of the matches played at this event.
+			 * @throws BLUEApiException If the request fails.  Errors while reading the stream are
+			 *         thrown as <code>UncheckedBLUEApiException</code>.
+			 */
+			public Stream<Matches.Match> streamMatches()
+				throws BLUEApiException
+			{
+				return _client.stream("/event/" + getEventKey() + "/matches", ModelReader.MATCH_READER);
+			}
+			
+			/**
+			 * Asynchronously gets a list of matches played at this event.
+			 * 
+			 * @return A future that completes with the matches played at this event.
+			 */
+			public CompletableFuture<Matches.Match[]> getMatchesAsync() {
+				return _client.supplyAsync(new BLUEClient.ApiCall<Matches.Match[]>() {
+					public Matches.Match[] call() throws BLUEApiException {
+						return getMatches();
+					}
+				});
+			}
 		}
 		
 		/**
@@ -517,17 +811,97 @@ public class BLUE {
 		 * @return The event with event code <code>eventCode</code> in <code>year</code>.
 		 * @throws BLUEApiException
 		 */
-		@SuppressWarnings("rawtypes")
 		public static Event getEvent(String eventCode, int year)
 				throws BLUEApiException
+		{
+			return getEvent(defaultClient, eventCode, year);
+		}
+		
+		/**
+		 * Gets the event with event code <code>eventCode</code> in <code>year</code> using <code>client</code>
+		 * @param client The client to make the request with.
+		 * @param eventCode The eventCode of the requested event.
+		 * @param year The requested year.
+		 * @return The event with event code <code>eventCode</code> in <code>year</code>.
+		 * @throws BLUEApiException
+		 */
+		public static Event getEvent(BLUEClient client, String eventCode, int year)
+				throws BLUEApiException
 		{
 			String eventKey = year + eventCode;
+			EntityCache cache = client.getEntityCache();
+			
+			if(cache != null) {
+				Event event = cache.getEvent(eventKey);
+				
+				if(event != null) {
+					client.recordEntityHit("/event/{key}");
+					return event;
+				}
+				
+				return cache.putEvent(client.request("/event/" + eventKey, ModelReader.EVENT));
+			}
 			
-			HashMap obj;
+			return client.request("/event/" + eventKey, ModelReader.EVENT);
+		}
+		
+		/**
+		 * Gets every event in <code>year</code>
+		 * @param year The requested year.
+		 * @return The events held in <code>year</code>
+		 * @throws BLUEApiException
+		 */
+		public static Event[] getEvents(int year)
+				throws BLUEApiException
+		{
+			return getEvents(defaultClient, year);
+		}
+		
+		/**
+		 * Gets every event in <code>year</code> using <code>client</code>
+		 * @param client The client to make the request with.
+		 * @param year The requested year.
+		 * @return The events held in <code>year</code>
+		 * @throws BLUEApiException
+		 */
+		public static Event[] getEvents(BLUEClient client, int year)
+				throws BLUEApiException
+		{
+			Event[] events = client.request("/events/" + year, ModelReader.EVENTS);
+			EntityCache cache = client.getEntityCache();
 			
-            obj = (HashMap)BLUE.api("/event/" + eventKey);
+			if(cache != null) {
+				for(int i = 0; i < events.length; i++) {
+					events[i] = cache.putEvent(events[i]);
+				}
+			}
 			
-			return parseEvent(obj);
+			return events;
+		}
+		
+		/**
+		 * Asynchronously gets the event with event code <code>eventCode</code> in <code>year</code>
+		 * @param eventCode The eventCode of the requested event.
+		 * @param year The requested year.
+		 * @return A future that completes with the event with event code <code>eventCode</code> in <code>year</code>.
+		 */
+		public static CompletableFuture<Event> getEventAsync(String eventCode, int year) {
+			return getEventAsync(defaultClient, eventCode, year);
+		}
+		
+		/**
+		 * Asynchronously gets the event with event code <code>eventCode</code> in <code>year</code> using <code>client</code>
+		 * @param client The client to make the request with.
+		 * @param eventCode The eventCode of the requested event.
+		 * @param year The requested year.
+		 * @return A future that completes with the event with event code <code>eventCode</code> in <code>year</code>.
+		 */
+		public static CompletableFuture<Event> getEventAsync(final BLUEClient client, final String eventCode, final int year) {
+			return client.supplyAsync(new BLUEClient.ApiCall<Event>() {
+				public Event call() throws BLUEApiException {
+					return getEvent(client, eventCode, year);
+				}
+			});
 		}
 		
 		/**
@@ -537,8 +911,24 @@ public class BLUE {
 		 */
 		@SuppressWarnings("rawtypes")
 		public static Event parseEvent(HashMap event) {
-			return new Event((String)event.get("key"), (String)event.get("name"), (String)event.get("short_name"),
-					(String)event.get("event_code"), (String)event.get("event_type_string"), (int)(long)(Long)event.get("event_type"),
+			return parseEvent(defaultClient, event);
+		}
+		
+		@SuppressWarnings("rawtypes")
+		static Event parseEvent(BLUEClient client, HashMap event) {
+			if(!client.isInstrumented()) return mapEvent(client, event);
+			
+			long start = System.nanoTime();
+			Event mapped = mapEvent(client, event);
+			client.recordMapping("Event", System.nanoTime() - start);
+			
+			return mapped;
+		}
+		
+		@SuppressWarnings("rawtypes")
+		private static Event mapEvent(BLUEClient client, HashMap event) {
+			return new Event(client, client.canonicalize((String)event.get("key")), (String)event.get("name"), (String)event.get("short_name"),
+					(String)event.get("event_code"), client.canonicalize((String)event.get("event_type_string")), (int)(long)(Long)event.get("event_type"),
 					(int)(long)(Long)event.get("year"), (String)event.get("location"), (Boolean)event.get("official"));
 		}
 		
@@ -558,12 +948,17 @@ public class BLUE {
 			 * Represents an alliance in a match.
 			 */
 			public static class Alliance {
-				Teams.AllianceColor _color;
-				String[] _teams;
+				final Teams.AllianceColor _color;
+				final String[] _keys;
+				final int _offset;
+				final int _size;
 				
-				private Alliance(Teams.AllianceColor color, String[] teams) {
+				// A view of the alliance's part of the match's team keys.
+				Alliance(Teams.AllianceColor color, String[] keys, int offset, int size) {
 					_color = color;
-					_teams = teams;
+					_keys = keys;
+					_offset = offset;
+					_size = size;
 				}
 				
 				/**
@@ -572,43 +967,82 @@ public class BLUE {
 				 * @return The teams in this alliance.
 				 */
 				public String[] getTeams() {
-					String[] copy = new String[_teams.length];
+					String[] copy = new String[_size];
 					
-					System.arraycopy(_teams, 0, copy, 0, copy.length);
+					System.arraycopy(_keys, _offset, copy, 0, _size);
 					
 					return copy;
 				}
 				
+				/**
+				 * Gets the number of teams in this alliance, including any surrogate or backup teams.
+				 * 
+				 * @return The number of teams.
+				 */
+				public int size() {
+					return _size;
+				}
+				
+				/**
+				 * Gets a team in this alliance without copying the team list.
+				 * 
+				 * @param index The position of the team, from <code>0</code> to <code>size() - 1</code>.
+				 * @return The team key.
+				 */
+				public String getTeam(int index) {
+					if(index < 0 || index >= _size) throw new IndexOutOfBoundsException("index");
+					
+					return _keys[_offset + index];
+				}
+				
 				/**
 				 * Returns the <code>String</code> representation of this <code>Alliance</code>.
 				 */
 				public String toString() {
-					return String.format("{ %s, %s }", _color.name(), Arrays.toString(_teams));
+					return String.format("{ %s, %s }", _color.name(), Arrays.toString(getTeams()));
 				}
 			}
 			
+			private static final String[] NO_TEAMS = new String[0];
+			
 			String _key;
 			String _compLevel;
 			int _setNumber;
 			int _matchNumber;
 			String _eventKey;
-			Alliance _redAlliance;
 			int _redAllianceScore;
-			Alliance _blueAlliance;
 			int _blueAllianceScore;
+			String[] _teamKeys;
+			int[] _teamNumbers;
+			int _redCount;
+			private Alliance _redAlliance;
+			private Alliance _blueAlliance;
 			
-			private Match(String key, String compLevel, int setNumber,
-					int matchNumber, String eventKey, Alliance redAlliance,
-					int redAllianceScore, Alliance blueAlliance, int blueAllianceScore) {
+			Match(String key, String compLevel, int setNumber,
+					int matchNumber, String eventKey, String[] redTeams,
+					int redAllianceScore, String[] blueTeams, int blueAllianceScore) {
 				_key = key;
 				_compLevel = compLevel;
 				_setNumber = setNumber;
 				_matchNumber = matchNumber;
 				_eventKey = eventKey;
-				_redAlliance = redAlliance;
 				_redAllianceScore = redAllianceScore;
-				_blueAlliance = blueAlliance;
 				_blueAllianceScore = blueAllianceScore;
+				
+				String[] red = redTeams == null ? NO_TEAMS : redTeams;
+				String[] blue = blueTeams == null ? NO_TEAMS : blueTeams;
+				
+				// Keys and numbers are packed red then blue, so team loops touch small arrays and never allocate.
+				_teamKeys = new String[red.length + blue.length];
+				_teamNumbers = new int[_teamKeys.length];
+				_redCount = red.length;
+				
+				System.arraycopy(red, 0, _teamKeys, 0, red.length);
+				System.arraycopy(blue, 0, _teamKeys, _redCount, blue.length);
+				
+				for(int i = 0; i < _teamKeys.length; i++) {
+					_teamNumbers[i] = MatchTable.teamNumber(_teamKeys[i]);
+				}
 			}
 			
 			/**
@@ -662,7 +1096,18 @@ public class BLUE {
 			 * @return The red alliance <code>Alliance</code> object.
 			 */
 			public Alliance getRedAlliance() {
-				return _redAlliance;
+				Alliance alliance = _redAlliance;
+				
+				// Built on first use; its fields are final, so an unsynchronized read sees it whole.
+				if(alliance == null) {
+					synchronized(this) {
+						if(_redAlliance == null) _redAlliance = new Alliance(Teams.AllianceColor.RED, _teamKeys, 0, _redCount);
+						
+						alliance = _redAlliance;
+					}
+				}
+				
+				return alliance;
 			}
 			
 			/**
@@ -680,7 +1125,17 @@ public class BLUE {
 			 * @return The blue alliance <code>Alliance</code> object.
 			 */
 			public Alliance getBlueAlliance() {
-				return _blueAlliance;
+				Alliance alliance = _blueAlliance;
+				
+				if(alliance == null) {
+					synchronized(this) {
+						if(_blueAlliance == null) _blueAlliance = new Alliance(Teams.AllianceColor.BLUE, _teamKeys, _redCount, _teamKeys.length - _redCount);
+						
+						alliance = _blueAlliance;
+					}
+				}
+				
+				return alliance;
 			}
 			
 			/**
@@ -692,6 +1147,100 @@ public class BLUE {
 				return _blueAllianceScore;
 			}
 			
+			/**
+			 * Gets the number of teams on the red alliance.
+			 * 
+			 * @return The number of red teams.
+			 */
+			public int getRedTeamCount() {
+				return _redCount;
+			}
+			
+			/**
+			 * Gets the number of teams on the blue alliance.
+			 * 
+			 * @return The number of blue teams.
+			 */
+			public int getBlueTeamCount() {
+				return _teamNumbers.length - _redCount;
+			}
+			
+			/**
+			 * Gets the number of a team on the red alliance.
+			 * 
+			 * @param index The position of the team, from <code>0</code> to <code>getRedTeamCount() - 1</code>.
+			 * @return The team number, or <code>0</code> if its key has no number.
+			 */
+			public int getRedTeam(int index) {
+				if(index < 0 || index >= _redCount) throw new IndexOutOfBoundsException("index");
+				
+				return _teamNumbers[index];
+			}
+			
+			/**
+			 * Gets the number of a team on the blue alliance.
+			 * 
+			 * @param index The position of the team, from <code>0</code> to <code>getBlueTeamCount() - 1</code>.
+			 * @return The team number, or <code>0</code> if its key has no number.
+			 */
+			public int getBlueTeam(int index) {
+				if(index < 0 || index >= _teamNumbers.length - _redCount) throw new IndexOutOfBoundsException("index");
+				
+				return _teamNumbers[_redCount + index];
+			}
+			
+			/**
+			 * Passes the number of every team in this match to <code>action</code>, red teams first.
+			 * 
+			 * @param action The action.
+			 */
+			public void forEachTeam(IntConsumer action) {
+				for(int team : _teamNumbers) {
+					action.accept(team);
+				}
+			}
+			
+			/**
+			 * Determines if a team played in this match.
+			 * 
+			 * @param teamNumber The team number.
+			 * @return <code>true</code> if the team was on either alliance; <code>false</code> otherwise.
+			 */
+			public boolean hasTeam(int teamNumber) {
+				return getAllianceColor(teamNumber) != null;
+			}
+			
+			/**
+			 * Gets the alliance a team played on.
+			 * 
+			 * @param teamNumber The team number.
+			 * @return The team's alliance color, or <code>null</code> if the team was not in this match.
+			 */
+			public Teams.AllianceColor getAllianceColor(int teamNumber) {
+				if(teamNumber <= 0) return null;
+				
+				for(int i = 0; i < _teamNumbers.length; i++) {
+					if(_teamNumbers[i] == teamNumber) return i < _redCount ? Teams.AllianceColor.RED : Teams.AllianceColor.BLUE;
+				}
+				
+				return null;
+			}
+			
+			/**
+			 * Gets the alliance a team played on, by key.  Unlike a team number, this tells apart
+			 * keys without a number of their own, such as <code>"frc254B"</code>.
+			 * 
+			 * @param teamKey The team key.
+			 * @return The team's alliance color, or <code>null</code> if the team was not in this match.
+			 */
+			public Teams.AllianceColor getAllianceColor(String teamKey) {
+				for(int i = 0; i < _teamKeys.length; i++) {
+					if(_teamKeys[i] != null && _teamKeys[i].equals(teamKey)) return i < _redCount ? Teams.AllianceColor.RED : Teams.AllianceColor.BLUE;
+				}
+				
+				return null;
+			}
+			
 			/**
 			 * Returns the <code>String</code> representation of this <code>Match</code>
 			 */
@@ -708,6 +1257,19 @@ public class BLUE {
 		 */
 		@SuppressWarnings("rawtypes")
 		public static Match parseMatch(HashMap obj) {
+			BLUEClient client = defaultClient;
+			
+			if(!client.isInstrumented()) return mapMatch(client, obj);
+			
+			long start = System.nanoTime();
+			Match match = mapMatch(client, obj);
+			client.recordMapping("Match", System.nanoTime() - start);
+			
+			return match;
+		}
+		
+		@SuppressWarnings("rawtypes")
+		private static Match mapMatch(BLUEClient client, HashMap obj) {
 			JSONObject alliances = (JSONObject)obj.get("alliances");
 			
 			JSONObject blueAllianceJson = (JSONObject)alliances.get("blue");
@@ -719,12 +1281,18 @@ public class BLUE {
 			int blueScore = (int)(int)(long)(Long)blueAllianceJson.get("score");
 			int redScore = (int)(int)(long)(Long)redAllianceJson.get("score");
 			
-			Match.Alliance blueAlliance = new Match.Alliance(Teams.AllianceColor.BLUE, new String[] { (String)blueTeams.get(0), (String)blueTeams.get(1), (String)blueTeams.get(2) });
-			Match.Alliance redAlliance = new Match.Alliance(Teams.AllianceColor.RED, new String[] { (String)redTeams.get(0), (String)redTeams.get(1), (String)redTeams.get(2) });
+			return new Match((String)obj.get("key"), client.canonicalize((String)obj.get("comp_level")), (int)(long)(Long)obj.get("set_number"),
+					(int)(long)(Long)obj.get("match_number"), client.canonicalize((String)obj.get("event_key")), teamKeys(client, redTeams), redScore, teamKeys(client, blueTeams), blueScore);
+		}
+		
+		private static String[] teamKeys(BLUEClient client, JSONArray teams) {
+			String[] keys = new String[teams.size()];
 			
-			return new Match((String)obj.get("key"), (String)obj.get("comp_level"), (int)(long)(Long)obj.get("set_number"),
-					(int)(long)(Long)obj.get("match_number"), (String)obj.get("event_key"), redAlliance, redScore, blueAlliance, blueScore);
+			for(int i = 0; i < keys.length; i++) {
+				keys[i] = client.canonicalize((String)teams.get(i));
+			}
 			
+			return keys;
 		}
 	}
 }
@@ -0,0 +1,1519 @@
+/*
+ * The Blue Alliance Java API - BLUEClient.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * An immutable, thread-safe client for the The Blue Alliance REST API.
+ * 
+ * <p>A client holds only its configuration, so a single instance may be shared
+ * freely between threads.  Every call gets its own parser; connections are pooled by
+ * the <code>Transport</code>.  The transport and the optional caches are internally
+ * synchronized.</p>
+ */
+public final class BLUEClient {
+	
+	/**
+	 * The default API base URL.
+	 */
+	public static final String DEFAULT_API_BASE = "http://www.thebluealliance.com/api/v2";
+	
+	/**
+	 * The default connect timeout, in milliseconds.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	
+	/**
+	 * The default read timeout, in milliseconds.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+	
+	/**
+	 * The default number of requests a bulk fetch keeps in flight.
+	 */
+	public static final int DEFAULT_BULK_PARALLELISM = 8;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	private static final int HTTP_OK = 200;
+	private static final int HTTP_NOT_MODIFIED = 304;
+	
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "BLUEClient-worker");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	
+	private static final int HEDGE_THREADS = 16;
+	
+	/**
+	 * Sends hedged duplicates.  It is separate from the client's executor, whose threads may all be
+	 * callers waiting on their own requests, and rejects work rather than queueing it.
+	 */
+	private static final ThreadPoolExecutor HEDGE_EXECUTOR = new ThreadPoolExecutor(0, HEDGE_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "BLUEClient-hedge");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	
+	/**
+	 * A blocking API call that can be run asynchronously.
+	 */
+	interface ApiCall<T> {
+		T call() throws BLUEApiException;
+	}
+	
+	/**
+	 * Reads a response body.  Implementations must be stateless.
+	 */
+	interface BodyParser<T> {
+		T parse(BLUEClient client, Reader reader) throws IOException, ParseException;
+	}
+	
+	/**
+	 * Reads a response body into a json-simple <code>JSONObject</code>/<code>JSONArray</code> tree.
+	 */
+	static final BodyParser<Object> TREE = new BodyParser<Object>() {
+		public Object parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			return new JSONParser().parse(reader);
+		}
+	};
+	
+	/**
+	 * Builds instances of <code>BLUEClient</code>.
+	 */
+	public static final class Builder {
+		String _appId = "";
+		String _apiBase = DEFAULT_API_BASE;
+		int _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+		int _readTimeout = DEFAULT_READ_TIMEOUT;
+		Executor _executor = DEFAULT_EXECUTOR;
+		EndpointCache _endpointCache;
+		int _bulkParallelism = DEFAULT_BULK_PARALLELISM;
+		Transport _transport;
+		EntityCache _entityCache;
+		DiskResponseStore _diskStore;
+		DiskResponseStore.Policy _diskPolicy = DiskResponseStore.Policy.REVALIDATE;
+		RateLimiter _rateLimiter;
+		RetryPolicy _retryPolicy;
+		boolean _coalesceRequests = true;
+		boolean _shareJsonTrees;
+		Instrumentation _instrumentation = Instrumentation.NOOP;
+		MatchIndex _matchIndex;
+		KeyDictionary _keyDictionary;
+		
+		Builder() {
+		}
+		
+		Builder(BLUEClient client) {
+			_appId = client._appId;
+			_apiBase = client._apiBase;
+			_connectTimeout = client._connectTimeout;
+			_readTimeout = client._readTimeout;
+			_executor = client._executor;
+			_endpointCache = client._endpointCache;
+			_bulkParallelism = client._bulkParallelism;
+			_transport = client._transport;
+			_diskStore = client._diskStore;
+			_diskPolicy = client._diskPolicy;
+			_rateLimiter = client._rateLimiter;
+			_retryPolicy = client._retryPolicy;
+			_coalesceRequests = client._coalesceRequests;
+			_shareJsonTrees = client._shareJsonTrees;
+			_instrumentation = client._instrumentation;
+			_matchIndex = client._matchIndex;
+			_keyDictionary = client._keyDictionary;
+		}
+		
+		/**
+		 * Sets the App ID for the application.
+		 * 
+		 * @param appId The application ID, in the format &lt;team/person id&gt;:&lt;app description&gt;:&lt;version&gt;
+		 * @return This builder.
+		 */
+		public Builder appId(String appId) {
+			if(appId == null) throw new IllegalArgumentException("appId");
+			
+			_appId = appId;
+			return this;
+		}
+		
+		/**
+		 * Sets the base URL that API requests are made against.
+		 * 
+		 * @param apiBase The base URL, without a trailing slash.
+		 * @return This builder.
+		 */
+		public Builder apiBase(String apiBase) {
+			if(apiBase == null) throw new IllegalArgumentException("apiBase");
+			
+			_apiBase = apiBase;
+			return this;
+		}
+		
+		/**
+		 * Sets the connect timeout.
+		 * 
+		 * @param millis The connect timeout in milliseconds, or <code>0</code> for no timeout.
+		 * @return This builder.
+		 */
+		public Builder connectTimeout(int millis) {
+			if(millis < 0) throw new IllegalArgumentException("connectTimeout");
+			
+			_connectTimeout = millis;
+			return this;
+		}
+		
+		/**
+		 * Sets the read timeout.
+		 * 
+		 * @param millis The read timeout in milliseconds, or <code>0</code> for no timeout.
+		 * @return This builder.
+		 */
+		public Builder readTimeout(int millis) {
+			if(millis < 0) throw new IllegalArgumentException("readTimeout");
+			
+			_readTimeout = millis;
+			return this;
+		}
+		
+		/**
+		 * Sets the executor used for work the client runs in the background, including
+		 * the requests made by the <code>...Async</code> methods.
+		 * 
+		 * @param executor The executor.
+		 * @return This builder.
+		 */
+		public Builder executor(Executor executor) {
+			if(executor == null) throw new IllegalArgumentException("executor");
+			
+			_executor = executor;
+			return this;
+		}
+		
+		/**
+		 * Sets the cache used for conditional requests.
+		 * 
+		 * @param endpointCache The cache, or <code>null</code> to always download full responses.
+		 * @return This builder.
+		 */
+		public Builder endpointCache(EndpointCache endpointCache) {
+			_endpointCache = endpointCache;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of requests a bulk fetch keeps in flight.
+		 * 
+		 * @param parallelism The maximum number of concurrent requests per bulk fetch.
+		 * @return This builder.
+		 */
+		public Builder bulkParallelism(int parallelism) {
+			if(parallelism <= 0) throw new IllegalArgumentException("bulkParallelism");
+			
+			_bulkParallelism = parallelism;
+			return this;
+		}
+		
+		/**
+		 * Sets the cache of teams, events and event lists.  Cached models are bound to the client
+		 * that fetched them, so a cache belongs to the one client built with it and is not copied
+		 * by <code>toBuilder()</code>.
+		 * 
+		 * @param entityCache The cache, or <code>null</code> to always make a request.
+		 * @return This builder.
+		 */
+		public Builder entityCache(EntityCache entityCache) {
+			_entityCache = entityCache;
+			return this;
+		}
+		
+		/**
+		 * Sets the on-disk store of raw responses, revalidating stored responses before use.
+		 * 
+		 * @param diskStore The store, or <code>null</code> to keep responses only in memory.
+		 * @return This builder.
+		 */
+		public Builder diskStore(DiskResponseStore diskStore) {
+			return diskStore(diskStore, DiskResponseStore.Policy.REVALIDATE);
+		}
+		
+		/**
+		 * Sets the on-disk store of raw responses.
+		 * 
+		 * @param diskStore The store, or <code>null</code> to keep responses only in memory.
+		 * @param policy How stored responses are used.
+		 * @return This builder.
+		 */
+		public Builder diskStore(DiskResponseStore diskStore, DiskResponseStore.Policy policy) {
+			if(policy == null) throw new IllegalArgumentException("policy");
+			
+			_diskStore = diskStore;
+			_diskPolicy = policy;
+			return this;
+		}
+		
+		/**
+		 * Sets the limiter requests wait on before they are sent.
+		 * 
+		 * @param rateLimiter The limiter, or <code>null</code> to send requests as soon as they are made.
+		 * @return This builder.
+		 */
+		public Builder rateLimiter(RateLimiter rateLimiter) {
+			_rateLimiter = rateLimiter;
+			return this;
+		}
+		
+		/**
+		 * Sets the policy for retrying failed requests and hedging slow ones.
+		 * 
+		 * @param retryPolicy The policy, or <code>null</code> to send every request once.
+		 * @return This builder.
+		 */
+		public Builder retryPolicy(RetryPolicy retryPolicy) {
+			_retryPolicy = retryPolicy;
+			return this;
+		}
+		
+		/**
+		 * Sets whether concurrent calls for the same endpoint share one request.  On by default.
+		 * 
+		 * @param coalesce <code>true</code> to share in-flight requests; <code>false</code> to send one per call.
+		 * @return This builder.
+		 */
+		public Builder coalesceRequests(boolean coalesce) {
+			_coalesceRequests = coalesce;
+			return this;
+		}
+		
+		/**
+		 * Sets whether <code>api</code> hands every caller the same JSON tree.  Off by default: each
+		 * call gets its own copy, so changes made by one caller never reach another caller or the
+		 * endpoint cache.  Sharing skips the copy, and callers must then treat the tree as read-only.
+		 * 
+		 * @param share <code>true</code> to share JSON trees; <code>false</code> to copy them for each call.
+		 * @return This builder.
+		 */
+		public Builder shareJsonTrees(boolean share) {
+			_shareJsonTrees = share;
+			return this;
+		}
+		
+		/**
+		 * Sets where request timings, statuses, sizes, cache outcomes and failures are reported.
+		 * 
+		 * @param instrumentation The instrumentation, or <code>Instrumentation.NOOP</code> to report nothing.
+		 * @return This builder.
+		 */
+		public Builder instrumentation(Instrumentation instrumentation) {
+			if(instrumentation == null) throw new IllegalArgumentException("instrumentation");
+			
+			_instrumentation = instrumentation;
+			return this;
+		}
+		
+		/**
+		 * Sets the index that fetched match lists are added to.
+		 * 
+		 * @param matchIndex The index, or <code>null</code> to index nothing.
+		 * @return This builder.
+		 */
+		public Builder matchIndex(MatchIndex matchIndex) {
+			_matchIndex = matchIndex;
+			return this;
+		}
+		
+		/**
+		 * Sets the dictionary that team keys, event keys, event types and competition levels are
+		 * canonicalized through as responses are parsed.  Clients built from this one with
+		 * <code>toBuilder</code> share it.
+		 * 
+		 * @param keyDictionary The dictionary, or <code>null</code> to give every parsed key its own string.
+		 * @return This builder.
+		 */
+		public Builder keyDictionary(KeyDictionary keyDictionary) {
+			_keyDictionary = keyDictionary;
+			return this;
+		}
+		
+		/**
+		 * Sets the transport requests are sent through.
+		 * 
+		 * @param transport The transport.
+		 * @return This builder.
+		 */
+		public Builder transport(Transport transport) {
+			if(transport == null) throw new IllegalArgumentException("transport");
+			
+			_transport = transport;
+			return this;
+		}
+		
+		/**
+		 * Creates the client.  If no transport was set, the client gets a new <code>HttpTransport</code>.
+		 * 
+		 * @return A new <code>BLUEClient</code>.
+		 */
+		public BLUEClient build() {
+			if(_transport == null) _transport = new HttpTransport();
+			
+			return new BLUEClient(this);
+		}
+	}
+	
+	private final String _appId;
+	private final String _apiBase;
+	private final int _connectTimeout;
+	private final int _readTimeout;
+	private final Executor _executor;
+	private final EndpointCache _endpointCache;
+	private final int _bulkParallelism;
+	private final Transport _transport;
+	private final EntityCache _entityCache;
+	private final DiskResponseStore _diskStore;
+	private final DiskResponseStore.Policy _diskPolicy;
+	private final RateLimiter _rateLimiter;
+	private final RetryPolicy _retryPolicy;
+	private final boolean _coalesceRequests;
+	private final boolean _shareJsonTrees;
+	private final Instrumentation _instrumentation;
+	private final MatchIndex _matchIndex;
+	private final KeyDictionary _keyDictionary;
+	
+	private final ConcurrentHashMap<FlightKey, CompletableFuture<Object>> _inFlight = new ConcurrentHashMap<FlightKey, CompletableFuture<Object>>();
+	private final AtomicLong _coalesced = new AtomicLong();
+	
+	private final AtomicLong _responseCount = new AtomicLong();
+	private final AtomicLong _bytesRead = new AtomicLong();
+	private final AtomicLong _parseNanos = new AtomicLong();
+	
+	private BLUEClient(Builder builder) {
+		_appId = builder._appId;
+		_apiBase = builder._apiBase;
+		_connectTimeout = builder._connectTimeout;
+		_readTimeout = builder._readTimeout;
+		_executor = builder._executor;
+		_endpointCache = builder._endpointCache;
+		_bulkParallelism = builder._bulkParallelism;
+		_transport = builder._transport;
+		_entityCache = builder._entityCache;
+		_diskStore = builder._diskStore;
+		_diskPolicy = builder._diskPolicy;
+		_rateLimiter = builder._rateLimiter;
+		_retryPolicy = builder._retryPolicy;
+		_coalesceRequests = builder._coalesceRequests;
+		_shareJsonTrees = builder._shareJsonTrees;
+		_instrumentation = builder._instrumentation;
+		_matchIndex = builder._matchIndex;
+		_keyDictionary = builder._keyDictionary;
+		
+		if(_entityCache != null) _entityCache.bind(this);
+	}
+	
+	/**
+	 * Creates a new builder.
+	 * 
+	 * @return A new <code>Builder</code> with default settings.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Creates a new builder initialized with this client's settings, except its entity cache.
+	 * 
+	 * @return A new <code>Builder</code>.
+	 */
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+	
+	/**
+	 * Gets the App ID.
+	 * 
+	 * @return The App ID.
+	 */
+	public String getAppId() {
+		return _appId;
+	}
+	
+	/**
+	 * Gets the API base URL.
+	 * 
+	 * @return The API base URL.
+	 */
+	public String getApiBase() {
+		return _apiBase;
+	}
+	
+	/**
+	 * Gets the connect timeout.
+	 * 
+	 * @return The connect timeout, in milliseconds.
+	 */
+	public int getConnectTimeout() {
+		return _connectTimeout;
+	}
+	
+	/**
+	 * Gets the read timeout.
+	 * 
+	 * @return The read timeout, in milliseconds.
+	 */
+	public int getReadTimeout() {
+		return _readTimeout;
+	}
+	
+	/**
+	 * Gets the executor used for background work.
+	 * 
+	 * @return The executor.
+	 */
+	public Executor getExecutor() {
+		return _executor;
+	}
+	
+	/**
+	 * Gets the cache used for conditional requests.
+	 * 
+	 * @return The response cache, or <code>null</code> if there is none.
+	 */
+	public EndpointCache getEndpointCache() {
+		return _endpointCache;
+	}
+	
+	/**
+	 * Gets the number of requests a bulk fetch keeps in flight.
+	 * 
+	 * @return The bulk fetch parallelism.
+	 */
+	public int getBulkParallelism() {
+		return _bulkParallelism;
+	}
+	
+	/**
+	 * Gets the cache of teams, events and event lists.
+	 * 
+	 * @return The entity cache, or <code>null</code> if there is none.
+	 */
+	public EntityCache getEntityCache() {
+		return _entityCache;
+	}
+	
+	/**
+	 * Gets the on-disk store of raw responses.
+	 * 
+	 * @return The disk store, or <code>null</code> if there is none.
+	 */
+	public DiskResponseStore getDiskStore() {
+		return _diskStore;
+	}
+	
+	/**
+	 * Gets how stored responses are used.
+	 * 
+	 * @return The disk store policy.
+	 */
+	public DiskResponseStore.Policy getDiskStorePolicy() {
+		return _diskPolicy;
+	}
+	
+	/**
+	 * Gets the limiter requests wait on before they are sent.
+	 * 
+	 * @return The rate limiter, or <code>null</code> if there is none.
+	 */
+	public RateLimiter getRateLimiter() {
+		return _rateLimiter;
+	}
+	
+	/**
+	 * Gets the policy for retrying failed requests and hedging slow ones.
+	 * 
+	 * @return The retry policy, or <code>null</code> if there is none.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return _retryPolicy;
+	}
+	
+	/**
+	 * Determines if concurrent calls for the same endpoint share one request.
+	 * 
+	 * @return <code>true</code> if in-flight requests are shared; <code>false</code> otherwise.
+	 */
+	public boolean isCoalescingRequests() {
+		return _coalesceRequests;
+	}
+	
+	/**
+	 * Determines if <code>api</code> hands every caller the same JSON tree.
+	 * 
+	 * @return <code>true</code> if JSON trees are shared; <code>false</code> if each call gets a copy.
+	 */
+	public boolean isSharingJsonTrees() {
+		return _shareJsonTrees;
+	}
+	
+	/**
+	 * Gets the number of calls that were answered by another call's in-flight request.
+	 * 
+	 * @return The number of coalesced calls.
+	 */
+	public long getCoalescedCount() {
+		return _coalesced.get();
+	}
+	
+	/**
+	 * Gets where this client reports its measurements.
+	 * 
+	 * @return The instrumentation.
+	 */
+	public Instrumentation getInstrumentation() {
+		return _instrumentation;
+	}
+	
+	/**
+	 * Gets the index that fetched match lists are added to.
+	 * 
+	 * @return The match index, or <code>null</code> if there is none.
+	 */
+	public MatchIndex getMatchIndex() {
+		return _matchIndex;
+	}
+	
+	/**
+	 * Gets the dictionary parsed keys are canonicalized through.
+	 * 
+	 * @return The key dictionary, or <code>null</code> if there is none.
+	 */
+	public KeyDictionary getKeyDictionary() {
+		return _keyDictionary;
+	}
+	
+	/**
+	 * Canonicalizes a parsed key through the key dictionary, if there is one.
+	 */
+	String canonicalize(String key) {
+		return _keyDictionary == null ? key : _keyDictionary.canonicalize(key);
+	}
+	
+	/**
+	 * Determines if this client reports measurements anywhere.
+	 */
+	boolean isInstrumented() {
+		return _instrumentation != Instrumentation.NOOP;
+	}
+	
+	/**
+	 * Gets the transport requests are sent through.
+	 * 
+	 * @return The transport.
+	 */
+	public Transport getTransport() {
+		return _transport;
+	}
+	
+	/**
+	 * Gets the number of response bodies this client has read.
+	 * 
+	 * @return The number of responses read.
+	 */
+	public long getResponseCount() {
+		return _responseCount.get();
+	}
+	
+	/**
+	 * Gets the total number of response body bytes this client has read.
+	 * 
+	 * @return The number of bytes read.
+	 */
+	public long getBytesRead() {
+		return _bytesRead.get();
+	}
+	
+	/**
+	 * Gets the total time spent reading and parsing response bodies.  Because the
+	 * parser consumes the body as it arrives, this includes time spent waiting on the network.
+	 * 
+	 * @return The read and parse time, in nanoseconds.
+	 */
+	public long getParseTimeNanos() {
+		return _parseNanos.get();
+	}
+	
+	/**
+	 * Determines if this client has a valid App ID.
+	 * 
+	 * @return <code>true</code> if the App ID is valid; <code>false</code> otherwise.
+	 */
+	public boolean isInitialized() {
+		return _appId.length() > 0 && _appId.split(":").length == 3;
+	}
+	
+	/**
+	 * Makes an API call to The Blue Alliance.
+	 * 
+	 * @param apiReq The REST endpoint to make a request to.
+	 * @return The parsed JSON data: a copy the caller may change, unless the client shares JSON trees.
+	 */
+	public Object api(String apiReq)
+		throws BLUEApiException
+	{
+		Object tree = request(apiReq, TREE);
+		
+		// The tree may also be held by the endpoint cache and by coalesced callers.
+		return _shareJsonTrees ? tree : copyTree(tree);
+	}
+	
+	/**
+	 * Deep-copies a json-simple tree.  Strings, numbers and booleans are immutable and are shared.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Object copyTree(Object value) {
+		if(value instanceof JSONObject) {
+			JSONObject copy = new JSONObject((JSONObject)value);
+			
+			for(Object entry : copy.entrySet()) {
+				Map.Entry e = (Map.Entry)entry;
+				
+				if(e.getValue() instanceof JSONObject || e.getValue() instanceof JSONArray) e.setValue(copyTree(e.getValue()));
+			}
+			
+			return copy;
+		}
+		
+		if(value instanceof JSONArray) {
+			JSONArray copy = new JSONArray();
+			copy.addAll((JSONArray)value);
+			
+			for(int i = 0; i < copy.size(); i++) {
+				if(copy.get(i) instanceof JSONObject || copy.get(i) instanceof JSONArray) copy.set(i, copyTree(copy.get(i)));
+			}
+			
+			return copy;
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Identifies an in-flight request: the endpoint, and the parser its callers want the body read with.
+	 */
+	private static final class FlightKey {
+		final String _endpoint;
+		final BodyParser<?> _parser;
+		
+		FlightKey(String endpoint, BodyParser<?> parser) {
+			_endpoint = endpoint;
+			_parser = parser;
+		}
+		
+		public boolean equals(Object obj) {
+			if(!(obj instanceof FlightKey)) return false;
+			
+			FlightKey other = (FlightKey)obj;
+			
+			return _endpoint.equals(other._endpoint) && _parser == other._parser;
+		}
+		
+		public int hashCode() {
+			return _endpoint.hashCode() * 31 + System.identityHashCode(_parser);
+		}
+	}
+	
+	/**
+	 * Makes an API call to The Blue Alliance and reads the response with <code>parser</code>.
+	 * Calls made while an identical call is in flight wait for it and share its result; model
+	 * arrays are copied for each caller here, and JSON trees by <code>api</code>.
+	 * 
+	 * @param apiReq The REST endpoint to make a request to.
+	 * @param parser The parser for the response body.
+	 * @return The parsed response.
+	 */
+	<T> T request(String apiReq, BodyParser<T> parser)
+		throws BLUEApiException
+	{
+		if(!isInitialized()) throw new BLUEApiException("BLUE was not initialized.", null);
+		
+		String endpoint = _apiBase + apiReq;
+		String template = template(apiReq);
+		
+		if(!_coalesceRequests) {
+			try {
+				return handOut(fetch(endpoint, apiReq, template, parser));
+			} catch (BLUEApiException e) {
+				_instrumentation.recordFailure(template, e);
+				throw e;
+			}
+		}
+		
+		FlightKey key = new FlightKey(endpoint, parser);
+		CompletableFuture<Object> flight = new CompletableFuture<Object>();
+		CompletableFuture<Object> leader = _inFlight.putIfAbsent(key, flight);
+		
+		if(leader != null) {
+			_coalesced.incrementAndGet();
+			_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.COALESCED);
+			return await(leader);
+		}
+		
+		try {
+			T obj = fetch(endpoint, apiReq, template, parser);
+			flight.complete(obj);
+			return handOut(obj);
+		} catch (BLUEApiException e) {
+			_instrumentation.recordFailure(template, e);
+			flight.completeExceptionally(e);
+			throw e;
+		} catch (RuntimeException e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} catch (Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			_inFlight.remove(key, flight);
+		}
+	}
+	
+	/**
+	 * Waits for another caller's request and takes its result.
+	 */
+	private <T> T await(CompletableFuture<Object> leader)
+		throws BLUEApiException
+	{
+		Object value;
+		
+		try {
+			value = leader.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BLUEApiException("Interrupted while waiting for the response.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			
+			if(cause instanceof BLUEApiException) throw (BLUEApiException)cause;
+			if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if(cause instanceof Error) throw (Error)cause;
+			
+			throw new BLUEApiException("Unexpected error.", e);
+		}
+		
+		return handOut(value);
+	}
+	
+	/**
+	 * Copies a model array for one caller.  The array fetched may also be held by the endpoint
+	 * cache and by coalesced callers, so no caller may be given it directly.
+	 */
+	private static <T> T handOut(Object value) {
+		if(value instanceof Object[]) value = ((Object[])value).clone();
+		
+		@SuppressWarnings("unchecked")
+		T typed = (T)value;
+		
+		return typed;
+	}
+	
+	/**
+	 * Fetches and parses a response.  The result may be the endpoint cache's own copy.
+	 */
+	private <T> T fetch(String endpoint, String apiReq, String template, BodyParser<T> parser)
+		throws BLUEApiException
+	{
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("X-TBA-App-Id", _appId);
+		
+		EndpointCache.Entry cached = null;
+		
+		if(_endpointCache != null) {
+			cached = _endpointCache.lookup(endpoint, parser);
+			
+			if(cached != null) {
+				if(cached.getETag() != null) headers.put("If-None-Match", cached.getETag());
+				if(cached.getLastModified() != null) headers.put("If-Modified-Since", cached.getLastModified());
+			}
+		}
+		
+		DiskResponseStore.Record stored = null;
+		
+		if(_diskStore != null && cached == null) {
+			stored = _diskStore.get(endpoint);
+			
+			if(stored != null) {
+				if(_diskPolicy == DiskResponseStore.Policy.OFFLINE) {
+					_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.DISK);
+					return parseStored(endpoint, template, stored, parser);
+				}
+				
+				if(_diskPolicy == DiskResponseStore.Policy.STALE_WHILE_REVALIDATE) {
+					revalidateLater(endpoint, apiReq, template, stored);
+					_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.DISK);
+					return parseStored(endpoint, template, stored, parser);
+				}
+				
+				if(stored.getETag() != null) headers.put("If-None-Match", stored.getETag());
+				if(stored.getLastModified() != null) headers.put("If-Modified-Since", stored.getLastModified());
+			}
+		}
+		
+		Transport.Response response;
+		
+		try {
+			response = send(endpoint, apiReq, headers);
+		} catch (BLUEApiException e) {
+			// The server cannot be reached; fall back to the stored copy, however old.
+			if(stored == null || e.getInnerException() instanceof MalformedURLException) throw e;
+			
+			_diskStore.recordOfflineServe();
+			_instrumentation.recordFailure(template, e);
+			_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.DISK);
+			return parseStored(endpoint, template, stored, parser);
+		}
+		
+		try {
+			int status = response.getStatus();
+			
+			if(status == HTTP_NOT_MODIFIED && cached != null) {
+				_endpointCache.recordNotModified();
+				_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.NOT_MODIFIED);
+				
+				@SuppressWarnings("unchecked")
+				T typed = (T)cached.getValue();
+				
+				return typed;
+			}
+			
+			if(status == HTTP_NOT_MODIFIED && stored != null) {
+				_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.NOT_MODIFIED);
+				return parseStored(endpoint, template, stored, parser);
+			}
+			
+			if(status != HTTP_OK) throw new BLUEApiException("The server returned HTTP " + status + ".", null);
+			
+			_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.MISS);
+			
+			T obj = parse(endpoint, template, response, parser);
+			
+			if(_endpointCache != null) {
+				_endpointCache.store(endpoint, response.getHeader("ETag"), response.getHeader("Last-Modified"), parser, obj);
+			}
+			
+			return obj;
+		} finally {
+			try {
+				response.close();
+			} catch (IOException e) {
+				// The body has been consumed; nothing useful can be done here.
+			}
+		}
+	}
+	
+	/**
+	 * Makes an API call to The Blue Alliance whose response is a JSON array, and reads
+	 * its elements lazily with <code>itemReader</code>.  The response is never cached.
+	 * 
+	 * @param apiReq The REST endpoint to make a request to.
+	 * @param itemReader The reader for each array element.
+	 * @return A stream of the elements.  Closing it, or reading it to the end, releases the connection;
+	 *         one dropped after a short-circuiting operation holds it until it is garbage collected.
+	 */
+	<T> Stream<T> stream(String apiReq, ModelReader.ItemReader<T> itemReader)
+		throws BLUEApiException
+	{
+		if(!isInitialized()) throw new BLUEApiException("BLUE was not initialized.", null);
+		
+		String endpoint = _apiBase + apiReq;
+		
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("X-TBA-App-Id", _appId);
+		
+		String template = template(apiReq);
+		Transport.Response response;
+		
+		try {
+			response = send(endpoint, apiReq, headers);
+		} catch (BLUEApiException e) {
+			_instrumentation.recordFailure(template, e);
+			throw e;
+		}
+		
+		boolean opened = false;
+		
+		try {
+			int status = response.getStatus();
+			
+			final ModelCursor<T> cursor;
+			
+			try {
+				if(status != HTTP_OK) throw new BLUEApiException("The server returned HTTP " + status + ".", null);
+				
+				_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.MISS);
+				
+				try {
+					cursor = new ModelCursor<T>(this, template, response, itemReader);
+				} catch (IOException e) {
+					throw new BLUEApiException("Error reading the response.", e);
+				} catch (ParseException e) {
+					throw new BLUEApiException("Malformed response received.", e);
+				}
+			} catch (BLUEApiException e) {
+				_instrumentation.recordFailure(template, e);
+				throw e;
+			}
+			
+			opened = true;
+			
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(new Runnable() {
+					public void run() {
+						cursor.close();
+					}
+				});
+		} finally {
+			if(!opened) {
+				try {
+					response.close();
+				} catch (IOException e) {
+					// Nothing useful can be done here.
+				}
+			}
+		}
+	}
+	
+	private Transport.Response send(String endpoint, String apiReq, Map<String, String> headers)
+		throws BLUEApiException
+	{
+		Transport.Request request = new Transport.Request(endpoint, apiReq, headers, _connectTimeout, _readTimeout);
+		
+		try {
+			if(_retryPolicy == null) return execute(request);
+			
+			return sendWithRetries(request);
+		} catch (MalformedURLException e) {
+			throw new BLUEApiException("Malformed API request.", e);
+		} catch (IOException e) {
+			throw new BLUEApiException("Fatal! No internet!", e);
+		}
+	}
+	
+	/**
+	 * Sends a request once, through the rate limiter if there is one.
+	 */
+	private Transport.Response execute(Transport.Request request)
+		throws IOException, BLUEApiException
+	{
+		if(_rateLimiter == null) return executeTransport(request);
+		
+		return sendLimited(request);
+	}
+	
+	/**
+	 * Sends a request through the transport, reporting its timing and status to the instrumentation.
+	 * Failures are reported once per call, by <code>request</code> and <code>stream</code>.
+	 */
+	private Transport.Response executeTransport(Transport.Request request)
+		throws IOException
+	{
+		if(!isInstrumented()) return _transport.execute(request);
+		
+		String template = template(request.getPath());
+		long start = System.nanoTime();
+		Transport.Response response = _transport.execute(request);
+		
+		_instrumentation.recordPhase(template, Instrumentation.Phase.FIRST_BYTE, System.nanoTime() - start);
+		
+		if(response instanceof Transport.Timing) {
+			long connectNanos = ((Transport.Timing)response).getConnectNanos();
+			
+			if(connectNanos > 0) _instrumentation.recordPhase(template, Instrumentation.Phase.CONNECT, connectNanos);
+		}
+		
+		_instrumentation.recordResponse(template, response.getStatus());
+		
+		return response;
+	}
+	
+	/**
+	 * Sends a request until it succeeds, fails in a way that is not worth retrying, or runs out of attempts.
+	 */
+	private Transport.Response sendWithRetries(Transport.Request request)
+		throws IOException, BLUEApiException
+	{
+		for(int attempt = 1; ; attempt++) {
+			Transport.Response response = null;
+			String retryAfter = null;
+			
+			try {
+				long hedgeDelay = _retryPolicy.hedgeDelayNanos();
+				
+				response = hedgeDelay < 0 ? executeTimed(request) : sendHedged(request, hedgeDelay);
+			} catch (IOException e) {
+				if(attempt >= _retryPolicy.getMaxAttempts() || !_retryPolicy.isRetryable(e)) throw e;
+			}
+			
+			if(response != null) {
+				if(attempt >= _retryPolicy.getMaxAttempts() || !_retryPolicy.isRetryable(response.getStatus())) return response;
+				
+				retryAfter = response.getHeader("Retry-After");
+			}
+			
+			long delay = _retryPolicy.delayNanos(attempt, retryAfter);
+			
+			// The server asked for a longer wait than the policy allows; give the caller its answer.
+			if(delay < 0) return response;
+			
+			if(response != null) closeQuietly(response);
+			
+			_retryPolicy.recordRetry();
+			
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new BLUEApiException("Interrupted while waiting to retry the request.", e);
+			}
+		}
+	}
+	
+	private Transport.Response executeTimed(Transport.Request request)
+		throws IOException, BLUEApiException
+	{
+		long start = System.nanoTime();
+		Transport.Response response = execute(request);
+		
+		_retryPolicy.recordLatency(System.nanoTime() - start);
+		
+		return response;
+	}
+	
+	/**
+	 * A duplicate of a request the calling thread is sending itself.  It is sent from the hedge pool
+	 * if the original has not answered within the delay, and closed if it loses.
+	 */
+	private final class Hedge implements Runnable {
+		private final Transport.Request _request;
+		private final long _delay;
+		private final Thread _caller = Thread.currentThread();
+		private boolean _settled;
+		private boolean _sent;
+		private boolean _finished;
+		private Transport.Response _response;
+		
+		Hedge(Transport.Request request, long delay) {
+			_request = request;
+			_delay = delay;
+		}
+		
+		public void run() {
+			synchronized(this) {
+				long deadline = System.nanoTime() + _delay;
+				
+				try {
+					for(long remaining = _delay; !_settled && remaining > 0; remaining = deadline - System.nanoTime()) {
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				
+				if(_settled) return;
+				
+				_sent = true;
+			}
+			
+			Transport.Response response = null;
+			
+			try {
+				response = executeTimed(_request);
+			} catch (Exception e) {
+				// The original's outcome is reported instead.
+			}
+			
+			synchronized(this) {
+				_finished = true;
+				
+				if(response != null && !_settled) {
+					_settled = true;
+					_response = response;
+					response = null;
+					
+					// Frees the caller, still waiting on the original; it cannot have moved on while this lock is held.
+					if(_transport instanceof Transport.Abortable) ((Transport.Abortable)_transport).abort(_caller);
+				}
+				
+				notifyAll();
+			}
+			
+			if(response != null) closeQuietly(response);
+		}
+	}
+	
+	/**
+	 * Sends a request on the calling thread and, if it has not answered within <code>hedgeDelay</code>,
+	 * a duplicate from the hedge pool.  The first response wins; the other is closed.
+	 * 
+	 * <p>The original never waits for an executor, so callers already running on the client's executor
+	 * cannot starve it.  When the hedge pool is busy the request is simply not hedged.  The duplicate
+	 * can only cut a slow original short if the transport implements <code>Transport.Abortable</code>.</p>
+	 */
+	private Transport.Response sendHedged(Transport.Request request, long hedgeDelay)
+		throws IOException, BLUEApiException
+	{
+		Hedge hedge = new Hedge(request, hedgeDelay);
+		
+		try {
+			HEDGE_EXECUTOR.execute(hedge);
+		} catch (RejectedExecutionException e) {
+			return executeTimed(request);
+		}
+		
+		Transport.Response response = null;
+		Exception failure = null;
+		
+		try {
+			response = executeTimed(request);
+		} catch (IOException | BLUEApiException | RuntimeException e) {
+			failure = e;
+		}
+		
+		Transport.Response lost = null;
+		boolean sent;
+		boolean won;
+		
+		synchronized(hedge) {
+			sent = hedge._sent;
+			
+			if(response == null && sent && !hedge._settled) {
+				try {
+					while(!hedge._finished) hedge.wait();
+				} catch (InterruptedException e) {
+					hedge._settled = true;
+					Thread.currentThread().interrupt();
+					throw new BLUEApiException("Interrupted while waiting for the response.", e);
+				}
+			}
+			
+			won = hedge._response != null;
+			
+			if(won) {
+				lost = response;
+				response = hedge._response;
+			} else {
+				hedge._settled = true;
+				hedge.notifyAll();
+			}
+		}
+		
+		if(sent) _retryPolicy.recordHedge(won);
+		if(lost != null) closeQuietly(lost);
+		
+		if(response != null) return response;
+		if(failure instanceof IOException) throw (IOException)failure;
+		if(failure instanceof BLUEApiException) throw (BLUEApiException)failure;
+		
+		throw (RuntimeException)failure;
+	}
+	
+	private static void closeQuietly(Transport.Response response) {
+		try {
+			response.close();
+		} catch (IOException e) {
+			// Nothing useful can be done here.
+		}
+	}
+	
+	/**
+	 * Sends a request once the rate limiter allows it.  The response holds its concurrency slot until it is closed.
+	 */
+	private Transport.Response sendLimited(Transport.Request request)
+		throws IOException, BLUEApiException
+	{
+		try {
+			_rateLimiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BLUEApiException("Interrupted while waiting to send the request.", e);
+		}
+		
+		long start = System.nanoTime();
+		Transport.Response response;
+		
+		try {
+			response = executeTransport(request);
+		} catch (Transport.AbortedException e) {
+			// An original cut short by its winning hedge says nothing about the server's health.
+			_rateLimiter.release();
+			throw e;
+		} catch (IOException e) {
+			_rateLimiter.onFailure();
+			_rateLimiter.release();
+			throw e;
+		} catch (RuntimeException e) {
+			_rateLimiter.release();
+			throw e;
+		}
+		
+		_rateLimiter.onResponse(response.getStatus(), response.getHeader("Retry-After"), System.nanoTime() - start);
+		
+		return _rateLimiter.track(response);
+	}
+	
+	/**
+	 * Opens a reader over a response body, counting the bytes read through it.
+	 */
+	static Reader openReader(CountingInputStream is) {
+		return new BufferedReader(new InputStreamReader(is, UTF_8), READ_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Reduces an API path to its endpoint template: a segment of digits becomes <code>{year}</code>,
+	 * and any other segment containing a digit, such as a team or event key, becomes <code>{key}</code>.
+	 */
+	static String template(String apiReq) {
+		StringBuilder sb = new StringBuilder(apiReq.length());
+		int start = 0;
+		
+		while(start < apiReq.length()) {
+			int end = apiReq.indexOf('/', start);
+			
+			if(end < 0) end = apiReq.length();
+			
+			boolean digit = false;
+			boolean allDigits = end > start;
+			
+			for(int i = start; i < end; i++) {
+				char c = apiReq.charAt(i);
+				boolean isDigit = c >= '0' && c <= '9';
+				
+				digit |= isDigit;
+				allDigits &= isDigit;
+			}
+			
+			if(allDigits) {
+				sb.append("{year}");
+			} else if(digit) {
+				sb.append("{key}");
+			} else {
+				sb.append(apiReq, start, end);
+			}
+			
+			if(end < apiReq.length()) sb.append('/');
+			
+			start = end + 1;
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Records a response body that has been read.
+	 */
+	void recordResponse(long bytes, long parseNanos) {
+		_responseCount.incrementAndGet();
+		_bytesRead.addAndGet(bytes);
+		_parseNanos.addAndGet(parseNanos);
+	}
+	
+	/**
+	 * Records a response body that has been read, with its timing split into waiting on the stream and parsing.
+	 */
+	void recordResponse(String template, CountingInputStream is, long totalNanos, boolean parsed) {
+		recordResponse(is.getCount(), totalNanos);
+		
+		if(!isInstrumented()) return;
+		
+		long readNanos = is.getReadNanos();
+		
+		_instrumentation.recordBytes(template, is.getCount());
+		_instrumentation.recordPhase(template, Instrumentation.Phase.READ, readNanos);
+		
+		if(parsed) _instrumentation.recordPhase(template, Instrumentation.Phase.PARSE, Math.max(0, totalNanos - readNanos));
+	}
+	
+	/**
+	 * Records a call the entity cache answered.
+	 */
+	void recordEntityHit(String template) {
+		_instrumentation.recordCacheOutcome(template, Instrumentation.CacheOutcome.ENTITY_HIT);
+	}
+	
+	/**
+	 * Records the time taken to map a JSON tree to a model.
+	 */
+	void recordMapping(String model, long nanos) {
+		_instrumentation.recordPhase(model, Instrumentation.Phase.MAP, nanos);
+	}
+	
+	private <T> T parse(String endpoint, String template, Transport.Response response, BodyParser<T> parser)
+		throws BLUEApiException
+	{
+		InputStream body;
+		
+		try {
+			body = response.getBody();
+		} catch (IOException e) {
+			throw new BLUEApiException("Error reading the response.", e);
+		}
+		
+		if(_diskStore == null) return parse(template, body, parser);
+		
+		// Keep a copy of the raw body as the parser consumes it, for the disk store.
+		TeeInputStream tee = new TeeInputStream(body);
+		T obj = parse(template, tee, parser);
+		
+		try {
+			_diskStore.put(endpoint, response.getHeader("ETag"), response.getHeader("Last-Modified"), System.currentTimeMillis(), tee.drain());
+		} catch (IOException e) {
+			// A response that cannot be stored is still a good response.
+			_diskStore.recordWriteError();
+		}
+		
+		return obj;
+	}
+	
+	private <T> T parse(String template, InputStream body, BodyParser<T> parser)
+		throws BLUEApiException
+	{
+		CountingInputStream is = new CountingInputStream(body);
+		long start = System.nanoTime();
+		
+		try {
+			return parser.parse(this, openReader(is));
+		} catch (IOException e) {
+			throw new BLUEApiException("Error reading the response.", e);
+		} catch (ParseException e) {
+			throw new BLUEApiException("Malformed response received.", e);
+		} finally {
+			recordResponse(template, is, System.nanoTime() - start, true);
+		}
+	}
+	
+	/**
+	 * Parses a response from the disk store, and keeps the result in the endpoint cache.
+	 */
+	private <T> T parseStored(String endpoint, String template, DiskResponseStore.Record stored, BodyParser<T> parser)
+		throws BLUEApiException
+	{
+		T obj = parse(template, stored.openBody(), parser);
+		
+		if(_endpointCache != null) {
+			_endpointCache.store(endpoint, stored.getETag(), stored.getLastModified(), parser, obj);
+		}
+		
+		return obj;
+	}
+	
+	/**
+	 * Revalidates a stored response on the executor, storing the new body if it changed.
+	 */
+	private void revalidateLater(final String endpoint, final String apiReq, final String template, DiskResponseStore.Record stored) {
+		if(!_diskStore.beginRevalidation(endpoint)) return;
+		
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("X-TBA-App-Id", _appId);
+		
+		if(stored.getETag() != null) headers.put("If-None-Match", stored.getETag());
+		if(stored.getLastModified() != null) headers.put("If-Modified-Since", stored.getLastModified());
+		
+		Runnable revalidation = new Runnable() {
+			public void run() {
+				try {
+					Transport.Response response = send(endpoint, apiReq, headers);
+					
+					try {
+						if(response.getStatus() == HTTP_OK) {
+							byte[] body = new TeeInputStream(response.getBody()).drain();
+							recordResponse(body.length, 0);
+							_instrumentation.recordBytes(template, body.length);
+							_diskStore.put(endpoint, response.getHeader("ETag"), response.getHeader("Last-Modified"), System.currentTimeMillis(), body);
+							
+							if(_endpointCache != null) _endpointCache.invalidate(endpoint);
+						}
+					} finally {
+						response.close();
+					}
+				} catch (BLUEApiException e) {
+					// The stored copy stays in use until a revalidation succeeds.
+				} catch (IOException e) {
+					_diskStore.recordWriteError();
+				} finally {
+					_diskStore.endRevalidation(endpoint);
+				}
+			}
+		};
+		
+		try {
+			_executor.execute(revalidation);
+		} catch (RejectedExecutionException e) {
+			_diskStore.endRevalidation(endpoint);
+		}
+	}
+	
+	/**
+	 * Runs <code>call</code> on this client's executor.
+	 * 
+	 * @param call The call to run.
+	 * @return A future that completes with the call's result, or exceptionally with its <code>BLUEApiException</code>.
+	 */
+	<T> CompletableFuture<T> supplyAsync(final ApiCall<T> call) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		
+		try {
+			_executor.execute(new Runnable() {
+				public void run() {
+					try {
+						future.complete(call.call());
+					} catch (Throwable t) {
+						future.completeExceptionally(t);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new BLUEApiException("The request could not be scheduled.", e));
+		}
+		
+		return future;
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * The Blue Alliance Java API - CountingInputStream.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An <code>InputStream</code> that counts the bytes read through it and the time spent
+ * waiting on the underlying stream.
+ */
+class CountingInputStream extends FilterInputStream {
+	private long _count;
+	private long _readNanos;
+	
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+	
+	/**
+	 * Gets the number of bytes read so far.
+	 * 
+	 * @return The number of bytes read.
+	 */
+	long getCount() {
+		return _count;
+	}
+	
+	/**
+	 * Gets the time spent in reads of the underlying stream so far.
+	 * 
+	 * @return The read time, in nanoseconds.
+	 */
+	long getReadNanos() {
+		return _readNanos;
+	}
+	
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		int b = super.read();
+		_readNanos += System.nanoTime() - start;
+		
+		if(b >= 0) _count++;
+		
+		return b;
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		int n = super.read(b, off, len);
+		_readNanos += System.nanoTime() - start;
+		
+		if(n > 0) _count += n;
+		
+		return n;
+	}
+	
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		
+		_count += skipped;
+		
+		return skipped;
+	}
+	
+	public boolean markSupported() {
+		return false;
+	}
+}
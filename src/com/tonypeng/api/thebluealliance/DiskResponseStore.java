@@ -0,0 +1,550 @@
+/*
+ * The Blue Alliance Java API - DiskResponseStore.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of raw API responses, for warm restarts and offline runs.
+ * 
+ * <p>Responses are appended to a single log file; each record holds the endpoint, the
+ * <code>ETag</code> and <code>Last-Modified</code> validators, the fetch time and the raw body,
+ * followed by a checksum.  An in-memory index from endpoint to the newest record is rebuilt by
+ * scanning the log when the store is opened; a record cut short by a crash is dropped.  Bodies are
+ * read through a memory mapping of the log, so serving a stored response does not copy it.</p>
+ * 
+ * <p>Newer responses for an endpoint supersede older ones, which stay in the log until
+ * <code>compact</code> rewrites it.  The log is limited to 2 GB.</p>
+ */
+public class DiskResponseStore implements Closeable {
+	
+	/**
+	 * How a <code>BLUEClient</code> uses a stored response.
+	 */
+	public static enum Policy {
+		/** Revalidate with the server before use; serve the stored copy only on <code>304</code> or when the server cannot be reached. */
+		REVALIDATE,
+		/** Serve the stored copy immediately and revalidate it in the background. */
+		STALE_WHILE_REVALIDATE,
+		/** Serve the stored copy without contacting the server. */
+		OFFLINE
+	}
+	
+	/**
+	 * Represents a stored response.
+	 */
+	public static final class Record {
+		private final String _endpoint;
+		private final String _etag;
+		private final String _lastModified;
+		private final long _fetchTime;
+		private final ByteBuffer _body;
+		
+		Record(String endpoint, String etag, String lastModified, long fetchTime, ByteBuffer body) {
+			_endpoint = endpoint;
+			_etag = etag;
+			_lastModified = lastModified;
+			_fetchTime = fetchTime;
+			_body = body;
+		}
+		
+		/**
+		 * Gets the endpoint URL.
+		 * 
+		 * @return The endpoint URL.
+		 */
+		public String getEndpoint() {
+			return _endpoint;
+		}
+		
+		/**
+		 * Gets the <code>ETag</code> the response was served with.
+		 * 
+		 * @return The <code>ETag</code>, or <code>null</code>.
+		 */
+		public String getETag() {
+			return _etag;
+		}
+		
+		/**
+		 * Gets the <code>Last-Modified</code> header the response was served with.
+		 * 
+		 * @return The <code>Last-Modified</code> value, or <code>null</code>.
+		 */
+		public String getLastModified() {
+			return _lastModified;
+		}
+		
+		/**
+		 * Gets the time the response was fetched.
+		 * 
+		 * @return The fetch time, in milliseconds since the epoch.
+		 */
+		public long getFetchTime() {
+			return _fetchTime;
+		}
+		
+		/**
+		 * Gets the length of the body.
+		 * 
+		 * @return The body length, in bytes.
+		 */
+		public int getBodyLength() {
+			return _body.remaining();
+		}
+		
+		/**
+		 * Opens the body for reading.
+		 * 
+		 * @return A new stream over the body.
+		 */
+		public InputStream openBody() {
+			final ByteBuffer body = _body.duplicate();
+			
+			return new InputStream() {
+				public int read() {
+					return body.hasRemaining() ? body.get() & 0xff : -1;
+				}
+				
+				public int read(byte[] b, int off, int len) {
+					if(!body.hasRemaining()) return -1;
+					
+					int n = Math.min(len, body.remaining());
+					body.get(b, off, n);
+					return n;
+				}
+				
+				public int available() {
+					return body.remaining();
+				}
+			};
+		}
+	}
+	
+	private static final int MAGIC = 0x424c5545;
+	private static final int HEADER_SIZE = 8;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static class Location {
+		final long _offset;
+		final int _length;
+		final String _etag;
+		final String _lastModified;
+		final long _fetchTime;
+		final long _bodyOffset;
+		final int _bodyLength;
+		
+		Location(long offset, int length, String etag, String lastModified, long fetchTime, long bodyOffset, int bodyLength) {
+			_offset = offset;
+			_length = length;
+			_etag = etag;
+			_lastModified = lastModified;
+			_fetchTime = fetchTime;
+			_bodyOffset = bodyOffset;
+			_bodyLength = bodyLength;
+		}
+	}
+	
+	private final File _file;
+	private RandomAccessFile _raf;
+	private FileChannel _channel;
+	private MappedByteBuffer _map;
+	private long _size;
+	
+	// Locations are offsets into the current log; compaction replaces the index along with the log.
+	private volatile ConcurrentHashMap<String, Location> _index = new ConcurrentHashMap<String, Location>();
+	private final Set<String> _revalidating = ConcurrentHashMap.<String>newKeySet();
+	
+	private final AtomicLong _reads = new AtomicLong();
+	private final AtomicLong _writes = new AtomicLong();
+	private final AtomicLong _offlineServes = new AtomicLong();
+	private final AtomicLong _revalidations = new AtomicLong();
+	private final AtomicLong _writeErrors = new AtomicLong();
+	
+	private DiskResponseStore(File file)
+		throws IOException
+	{
+		_file = file;
+		openLog();
+	}
+	
+	/**
+	 * Opens a store, creating the log file if it does not exist.
+	 * 
+	 * @param file The log file.
+	 * @return The store.
+	 * @throws IOException If the log cannot be opened.
+	 */
+	public static DiskResponseStore open(File file)
+		throws IOException
+	{
+		return new DiskResponseStore(file);
+	}
+	
+	private void openLog()
+		throws IOException
+	{
+		_raf = new RandomAccessFile(_file, "rw");
+		_channel = _raf.getChannel();
+		
+		ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+		long length = _channel.size();
+		_map = _channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		
+		long pos = 0;
+		
+		while(pos + HEADER_SIZE <= length) {
+			Location location = readRecord(_map, pos, length);
+			
+			if(location == null) break;
+			
+			index.put(readEndpoint(_map, pos), location);
+			pos += HEADER_SIZE + location._length;
+		}
+		
+		if(pos < length) {
+			// Drop a record that was cut short, so new records are appended after valid data.
+			_channel.truncate(pos);
+			_map = _channel.map(FileChannel.MapMode.READ_ONLY, 0, pos);
+		}
+		
+		_size = pos;
+		_index = index;
+	}
+	
+	private static Location readRecord(ByteBuffer map, long offset, long limit) {
+		int pos = (int)offset;
+		
+		if(map.getInt(pos) != MAGIC) return null;
+		
+		int length = map.getInt(pos + 4);
+		
+		if(length < 4 || offset + HEADER_SIZE + length > limit) return null;
+		
+		ByteBuffer payload = map.duplicate();
+		payload.position(pos + HEADER_SIZE);
+		payload.limit(pos + HEADER_SIZE + length - 4);
+		
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		
+		if((int)crc.getValue() != map.getInt(pos + HEADER_SIZE + length - 4)) return null;
+		
+		readString(payload);
+		String etag = readString(payload);
+		String lastModified = readString(payload);
+		long fetchTime = payload.getLong();
+		int bodyLength = payload.getInt();
+		
+		return new Location(offset, length, etag, lastModified, fetchTime, payload.position(), bodyLength);
+	}
+	
+	private static String readEndpoint(ByteBuffer map, long offset) {
+		ByteBuffer payload = map.duplicate();
+		payload.position((int)offset + HEADER_SIZE);
+		
+		return readString(payload);
+	}
+	
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		
+		if(length < 0) return null;
+		
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		
+		return new String(bytes, UTF_8);
+	}
+	
+	private static void writeString(DataOutputStream out, String s)
+		throws IOException
+	{
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		
+		byte[] bytes = s.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Gets the newest stored response for <code>endpoint</code>.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 * @return The stored response, or <code>null</code> if there is none.
+	 */
+	public Record get(String endpoint) {
+		Location location;
+		ByteBuffer body;
+		
+		// The location and the mapping must come from the same log, which compaction replaces.
+		synchronized(this) {
+			location = _index.get(endpoint);
+			
+			if(location == null || _channel == null) return null;
+			
+			if(location._bodyOffset + location._bodyLength > _map.capacity()) {
+				try {
+					_map = _channel.map(FileChannel.MapMode.READ_ONLY, 0, _size);
+				} catch (IOException e) {
+					return null;
+				}
+			}
+			
+			body = _map.duplicate();
+		}
+		
+		body.position((int)location._bodyOffset);
+		body.limit((int)location._bodyOffset + location._bodyLength);
+		
+		_reads.incrementAndGet();
+		
+		return new Record(endpoint, location._etag, location._lastModified, location._fetchTime, body.slice());
+	}
+	
+	/**
+	 * Appends a response to the log.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 * @param etag The <code>ETag</code> header, or <code>null</code>.
+	 * @param lastModified The <code>Last-Modified</code> header, or <code>null</code>.
+	 * @param fetchTime The fetch time, in milliseconds since the epoch.
+	 * @param body The raw response body.
+	 * @throws IOException If the record cannot be written.
+	 */
+	public void put(String endpoint, String etag, String lastModified, long fetchTime, byte[] body)
+		throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		
+		out.writeInt(MAGIC);
+		out.writeInt(0);
+		writeString(out, endpoint);
+		writeString(out, etag);
+		writeString(out, lastModified);
+		out.writeLong(fetchTime);
+		out.writeInt(body.length);
+		out.write(body);
+		out.writeInt(0);
+		out.flush();
+		
+		ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		int length = record.capacity() - HEADER_SIZE;
+		record.putInt(4, length);
+		
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), HEADER_SIZE, length - 4);
+		record.putInt(record.capacity() - 4, (int)crc.getValue());
+		
+		synchronized(this) {
+			if(_channel == null) throw new IOException("The store is closed.");
+			if(_size + record.capacity() > Integer.MAX_VALUE) throw new IOException("The store is full; compact it or start a new one.");
+			
+			long offset = _size;
+			
+			while(record.hasRemaining()) {
+				_channel.write(record, offset + record.position());
+			}
+			
+			_size += record.capacity();
+			
+			long bodyOffset = offset + record.capacity() - 4 - body.length;
+			_index.put(endpoint, new Location(offset, length, etag, lastModified, fetchTime, bodyOffset, body.length));
+		}
+		
+		_writes.incrementAndGet();
+	}
+	
+	/**
+	 * Rewrites the log so it holds only the newest response for each endpoint.  The rewritten
+	 * log atomically replaces the old one, which stays in use if the rewrite fails.
+	 * 
+	 * @throws IOException If the log cannot be rewritten.
+	 */
+	public synchronized void compact()
+		throws IOException
+	{
+		if(_channel == null) throw new IOException("The store is closed.");
+		
+		if(_map.capacity() < _size) _map = _channel.map(FileChannel.MapMode.READ_ONLY, 0, _size);
+		
+		File temp = new File(_file.getPath() + ".compact");
+		RandomAccessFile out = new RandomAccessFile(temp, "rw");
+		boolean written = false;
+		
+		try {
+			out.setLength(0);
+			FileChannel target = out.getChannel();
+			List<Location> live = new ArrayList<Location>(_index.values());
+			
+			for(Location location : live) {
+				ByteBuffer record = _map.duplicate();
+				record.position((int)location._offset);
+				record.limit((int)(location._offset + HEADER_SIZE + location._length));
+				
+				while(record.hasRemaining()) {
+					target.write(record);
+				}
+			}
+			
+			target.force(true);
+			written = true;
+		} finally {
+			out.close();
+			
+			if(!written) temp.delete();
+		}
+		
+		try {
+			Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw new IOException("Could not replace " + _file, e);
+		}
+		
+		_channel.close();
+		_raf.close();
+		
+		openLog();
+	}
+	
+	/**
+	 * Determines if the store has a response for <code>endpoint</code>.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 * @return <code>true</code> if a response is stored; <code>false</code> otherwise.
+	 */
+	public boolean contains(String endpoint) {
+		return _index.containsKey(endpoint);
+	}
+	
+	/**
+	 * Gets the number of endpoints with a stored response.
+	 * 
+	 * @return The number of endpoints.
+	 */
+	public int size() {
+		return _index.size();
+	}
+	
+	/**
+	 * Gets the size of the log, including superseded records.
+	 * 
+	 * @return The log size, in bytes.
+	 */
+	public synchronized long getLogSize() {
+		return _size;
+	}
+	
+	/**
+	 * Gets the number of stored responses read.
+	 * 
+	 * @return The number of reads.
+	 */
+	public long getReadCount() {
+		return _reads.get();
+	}
+	
+	/**
+	 * Gets the number of responses written.
+	 * 
+	 * @return The number of writes.
+	 */
+	public long getWriteCount() {
+		return _writes.get();
+	}
+	
+	/**
+	 * Gets the number of stored responses served because the server could not be reached.
+	 * 
+	 * @return The number of offline serves.
+	 */
+	public long getOfflineServeCount() {
+		return _offlineServes.get();
+	}
+	
+	/**
+	 * Gets the number of background revalidations started.
+	 * 
+	 * @return The number of background revalidations.
+	 */
+	public long getRevalidationCount() {
+		return _revalidations.get();
+	}
+	
+	/**
+	 * Gets the number of responses that could not be written.
+	 * 
+	 * @return The number of failed writes.
+	 */
+	public long getWriteErrorCount() {
+		return _writeErrors.get();
+	}
+	
+	void recordOfflineServe() {
+		_offlineServes.incrementAndGet();
+	}
+	
+	void recordWriteError() {
+		_writeErrors.incrementAndGet();
+	}
+	
+	/**
+	 * Claims the background revalidation of <code>endpoint</code>.
+	 * 
+	 * @return <code>true</code> if the caller should revalidate; <code>false</code> if one is already running.
+	 */
+	boolean beginRevalidation(String endpoint) {
+		if(!_revalidating.add(endpoint)) return false;
+		
+		_revalidations.incrementAndGet();
+		return true;
+	}
+	
+	void endRevalidation(String endpoint) {
+		_revalidating.remove(endpoint);
+	}
+	
+	/**
+	 * Closes the log.  Records already handed out stay readable until they are garbage collected.
+	 */
+	public synchronized void close()
+		throws IOException
+	{
+		if(_channel == null) return;
+		
+		_channel.close();
+		_raf.close();
+		_channel = null;
+		_index.clear();
+	}
+}
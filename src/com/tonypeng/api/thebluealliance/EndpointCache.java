@@ -0,0 +1,226 @@
+/*
+ * The Blue Alliance Java API - EndpointCache.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, least-recently-used cache of parsed API responses.
+ * 
+ * <p>Each entry keeps the <code>ETag</code> and <code>Last-Modified</code> validators the
+ * server sent with the response.  A <code>BLUEClient</code> configured with a cache sends them
+ * back as <code>If-None-Match</code> and <code>If-Modified-Since</code>, and on a
+ * <code>304 Not Modified</code> returns the cached value without reading or parsing a body.</p>
+ * 
+ * <p>Cached values are shared between callers and must not be modified.  Depending on how
+ * it was requested, an endpoint's value is either a parsed JSON tree or the model objects
+ * read from it; an entry is only reused for a request of the same kind.</p>
+ */
+public class EndpointCache {
+	
+	/**
+	 * Represents a cached response.
+	 */
+	public static class Entry {
+		String _etag;
+		String _lastModified;
+		Object _kind;
+		Object _value;
+		
+		Entry(String etag, String lastModified, Object kind, Object value) {
+			_etag = etag;
+			_lastModified = lastModified;
+			_kind = kind;
+			_value = value;
+		}
+		
+		/**
+		 * Gets the <code>ETag</code> header of the cached response.
+		 * 
+		 * @return The <code>ETag</code>, or <code>null</code> if the server did not send one.
+		 */
+		public String getETag() {
+			return _etag;
+		}
+		
+		/**
+		 * Gets the <code>Last-Modified</code> header of the cached response.
+		 * 
+		 * @return The <code>Last-Modified</code> value, or <code>null</code> if the server did not send one.
+		 */
+		public String getLastModified() {
+			return _lastModified;
+		}
+		
+		/**
+		 * Gets the parsed response.
+		 * 
+		 * @return The parsed response.
+		 */
+		public Object getValue() {
+			return _value;
+		}
+	}
+	
+	private final int _maxEntries;
+	private final LinkedHashMap<String, Entry> _entries;
+	
+	private long _hits;
+	private long _misses;
+	private long _notModified;
+	private long _evictions;
+	
+	/**
+	 * Creates an instance of EndpointCache.
+	 * 
+	 * @param maxEntries The maximum number of responses to keep.
+	 */
+	@SuppressWarnings("serial")
+	public EndpointCache(int maxEntries) {
+		if(maxEntries <= 0) throw new IllegalArgumentException("maxEntries");
+		
+		_maxEntries = maxEntries;
+		_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, EndpointCache.Entry> eldest) {
+				if(size() > _maxEntries) {
+					_evictions++;
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Looks up the cached JSON tree for <code>endpoint</code>, counting a hit or a miss.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 * @return The cached entry, or <code>null</code> if there is none.
+	 */
+	public synchronized Entry lookup(String endpoint) {
+		return lookup(endpoint, BLUEClient.TREE);
+	}
+	
+	/**
+	 * Looks up the cached response for <code>endpoint</code> that was read by a parser of
+	 * <code>kind</code>, counting a hit or a miss.
+	 */
+	synchronized Entry lookup(String endpoint, Object kind) {
+		Entry entry = _entries.get(endpoint);
+		
+		if(entry != null && entry._kind != kind) entry = null;
+		
+		if(entry == null) {
+			_misses++;
+		} else {
+			_hits++;
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Stores a JSON tree response.  Responses without any validator are not stored, since they
+	 * could never be revalidated.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 * @param etag The <code>ETag</code> header, or <code>null</code>.
+	 * @param lastModified The <code>Last-Modified</code> header, or <code>null</code>.
+	 * @param value The parsed response.
+	 */
+	public synchronized void store(String endpoint, String etag, String lastModified, Object value) {
+		store(endpoint, etag, lastModified, BLUEClient.TREE, value);
+	}
+	
+	synchronized void store(String endpoint, String etag, String lastModified, Object kind, Object value) {
+		if(etag == null && lastModified == null) return;
+		
+		_entries.put(endpoint, new Entry(etag, lastModified, kind, value));
+	}
+	
+	/**
+	 * Records that the server confirmed a cached response with <code>304 Not Modified</code>.
+	 */
+	public synchronized void recordNotModified() {
+		_notModified++;
+	}
+	
+	/**
+	 * Removes the cached response for <code>endpoint</code>.
+	 * 
+	 * @param endpoint The full endpoint URL.
+	 */
+	public synchronized void invalidate(String endpoint) {
+		_entries.remove(endpoint);
+	}
+	
+	/**
+	 * Removes every cached response.
+	 */
+	public synchronized void clear() {
+		_entries.clear();
+	}
+	
+	/**
+	 * Gets the number of cached responses.
+	 * 
+	 * @return The number of cached responses.
+	 */
+	public synchronized int size() {
+		return _entries.size();
+	}
+	
+	/**
+	 * Gets the maximum number of cached responses.
+	 * 
+	 * @return The maximum number of cached responses.
+	 */
+	public int getMaxEntries() {
+		return _maxEntries;
+	}
+	
+	/**
+	 * Gets the number of lookups that found a cached response.
+	 * 
+	 * @return The number of hits.
+	 */
+	public synchronized long getHitCount() {
+		return _hits;
+	}
+	
+	/**
+	 * Gets the number of lookups that found no cached response.
+	 * 
+	 * @return The number of misses.
+	 */
+	public synchronized long getMissCount() {
+		return _misses;
+	}
+	
+	/**
+	 * Gets the number of <code>304 Not Modified</code> responses served from the cache.
+	 * 
+	 * @return The number of <code>304</code> responses.
+	 */
+	public synchronized long getNotModifiedCount() {
+		return _notModified;
+	}
+	
+	/**
+	 * Gets the number of responses evicted to stay within the size bound.
+	 * 
+	 * @return The number of evictions.
+	 */
+	public synchronized long getEvictionCount() {
+		return _evictions;
+	}
+}
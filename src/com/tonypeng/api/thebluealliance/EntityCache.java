@@ -0,0 +1,377 @@
+/*
+ * The Blue Alliance Java API - EntityCache.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Events;
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import com.tonypeng.api.thebluealliance.BLUE.Teams;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A size-bounded, least-recently-used cache of teams, events and per-event team and match
+ * lists, with a separate time-to-live for each kind of entity.
+ * 
+ * <p>A <code>BLUEClient</code> configured with an entity cache answers
+ * <code>Teams.getTeam</code>, <code>Events.getEvent</code>, <code>Event.getTeams</code> and
+ * <code>Event.getMatches</code> from it while the entry is fresh, without any request.  It also
+ * interns what it downloads: a fetched team or event equal to the cached one is replaced by the
+ * cached instance, so the same team seen at many events is held once.  Model objects are
+ * immutable, so cached instances are safely shared; lists are handed out as copies.</p>
+ * 
+ * <p>Cached models make their own requests, such as <code>Team.getEvents()</code>, through the
+ * client that fetched them, so a cache can only be used by one client.</p>
+ */
+public class EntityCache {
+	
+	/**
+	 * Kinds of cached entities.
+	 */
+	public static enum Type {
+		/** Teams, keyed by team key. */
+		TEAM(TimeUnit.HOURS.toMillis(24)),
+		/** Events, keyed by event key. */
+		EVENT(TimeUnit.HOURS.toMillis(1)),
+		/** The teams attending an event, keyed by event key. */
+		EVENT_TEAMS(TimeUnit.HOURS.toMillis(1)),
+		/** The matches played at an event, keyed by event key. */
+		EVENT_MATCHES(TimeUnit.SECONDS.toMillis(30));
+		
+		final long _defaultTtlMillis;
+		
+		Type(long defaultTtlMillis) {
+			_defaultTtlMillis = defaultTtlMillis;
+		}
+	}
+	
+	private static class Entry {
+		final Type _type;
+		final Object _value;
+		final long _expiresAt;
+		
+		Entry(Type type, Object value, long expiresAt) {
+			_type = type;
+			_value = value;
+			_expiresAt = expiresAt;
+		}
+	}
+	
+	private final int _maxEntries;
+	private final long[] _ttlMillis = new long[Type.values().length];
+	private final LinkedHashMap<String, Entry> _entries;
+	
+	private final long[] _hits = new long[Type.values().length];
+	private final long[] _misses = new long[Type.values().length];
+	private final long[] _interned = new long[Type.values().length];
+	private long _evictions;
+	private BLUEClient _owner;
+	
+	/**
+	 * Creates an instance of EntityCache with the default time-to-live for each type: 24 hours
+	 * for teams, 1 hour for events and event team lists, and 30 seconds for event match lists.
+	 * 
+	 * @param maxEntries The maximum number of cached entities and lists.
+	 */
+	@SuppressWarnings("serial")
+	public EntityCache(int maxEntries) {
+		if(maxEntries <= 0) throw new IllegalArgumentException("maxEntries");
+		
+		_maxEntries = maxEntries;
+		
+		for(Type type : Type.values()) {
+			_ttlMillis[type.ordinal()] = type._defaultTtlMillis;
+		}
+		
+		_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, EntityCache.Entry> eldest) {
+				if(size() > _maxEntries) {
+					_evictions++;
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Sets how long entities of <code>type</code> stay fresh.
+	 * 
+	 * @param type The entity type.
+	 * @param ttl The time-to-live; <code>0</code> disables caching of the type.
+	 * @param unit The unit of <code>ttl</code>.
+	 * @return This cache.
+	 */
+	public synchronized EntityCache setTtl(Type type, long ttl, TimeUnit unit) {
+		if(ttl < 0) throw new IllegalArgumentException("ttl");
+		
+		_ttlMillis[type.ordinal()] = unit.toMillis(ttl);
+		return this;
+	}
+	
+	/**
+	 * Gets how long entities of <code>type</code> stay fresh.
+	 * 
+	 * @param type The entity type.
+	 * @return The time-to-live, in milliseconds.
+	 */
+	public synchronized long getTtlMillis(Type type) {
+		return _ttlMillis[type.ordinal()];
+	}
+	
+	/**
+	 * Gets a fresh cached team.
+	 * 
+	 * @param teamKey The team key, such as <code>frc254</code>.
+	 * @return The team, or <code>null</code> if it is not cached or has expired.
+	 */
+	public Teams.Team getTeam(String teamKey) {
+		return (Teams.Team)get(Type.TEAM, teamKey);
+	}
+	
+	/**
+	 * Gets a fresh cached event.
+	 * 
+	 * @param eventKey The event key, such as <code>2014casj</code>.
+	 * @return The event, or <code>null</code> if it is not cached or has expired.
+	 */
+	public Events.Event getEvent(String eventKey) {
+		return (Events.Event)get(Type.EVENT, eventKey);
+	}
+	
+	/**
+	 * Gets the fresh cached list of teams attending an event.
+	 * 
+	 * @param eventKey The event key.
+	 * @return A copy of the list, or <code>null</code> if it is not cached or has expired.
+	 */
+	public Teams.Team[] getEventTeams(String eventKey) {
+		Teams.Team[] teams = (Teams.Team[])get(Type.EVENT_TEAMS, eventKey);
+		
+		return teams == null ? null : teams.clone();
+	}
+	
+	/**
+	 * Gets the fresh cached list of matches played at an event.
+	 * 
+	 * @param eventKey The event key.
+	 * @return A copy of the list, or <code>null</code> if it is not cached or has expired.
+	 */
+	public Matches.Match[] getEventMatches(String eventKey) {
+		Matches.Match[] matches = (Matches.Match[])get(Type.EVENT_MATCHES, eventKey);
+		
+		return matches == null ? null : matches.clone();
+	}
+	
+	/**
+	 * Caches a team, or returns the cached instance if it is equal.
+	 * 
+	 * @param team The team.
+	 * @return The shared instance for the team.
+	 */
+	public Teams.Team putTeam(Teams.Team team) {
+		return (Teams.Team)intern(Type.TEAM, team.getTeamKey(), team);
+	}
+	
+	/**
+	 * Caches an event, or returns the cached instance if it is equal.
+	 * 
+	 * @param event The event.
+	 * @return The shared instance for the event.
+	 */
+	public Events.Event putEvent(Events.Event event) {
+		return (Events.Event)intern(Type.EVENT, event.getEventKey(), event);
+	}
+	
+	/**
+	 * Caches the list of teams attending an event, interning each team.
+	 * 
+	 * @param eventKey The event key.
+	 * @param teams The teams.  Its elements are replaced by the shared instances.
+	 * @return <code>teams</code>.
+	 */
+	public Teams.Team[] putEventTeams(String eventKey, Teams.Team[] teams) {
+		for(int i = 0; i < teams.length; i++) {
+			teams[i] = putTeam(teams[i]);
+		}
+		
+		put(Type.EVENT_TEAMS, eventKey, teams.clone());
+		
+		return teams;
+	}
+	
+	/**
+	 * Caches the list of matches played at an event.
+	 * 
+	 * @param eventKey The event key.
+	 * @param matches The matches.
+	 * @return <code>matches</code>.
+	 */
+	public Matches.Match[] putEventMatches(String eventKey, Matches.Match[] matches) {
+		put(Type.EVENT_MATCHES, eventKey, matches.clone());
+		
+		return matches;
+	}
+	
+	/**
+	 * Removes a cached entity or list.
+	 * 
+	 * @param type The entity type.
+	 * @param key The team or event key.
+	 */
+	public synchronized void invalidate(Type type, String key) {
+		_entries.remove(cacheKey(type, key));
+	}
+	
+	/**
+	 * Removes every cached entity of <code>type</code>.
+	 * 
+	 * @param type The entity type.
+	 */
+	public synchronized void invalidateAll(Type type) {
+		Iterator<Entry> it = _entries.values().iterator();
+		
+		while(it.hasNext()) {
+			if(it.next()._type == type) it.remove();
+		}
+	}
+	
+	/**
+	 * Removes everything.
+	 */
+	public synchronized void clear() {
+		_entries.clear();
+	}
+	
+	/**
+	 * Gets the number of cached entities and lists, including expired ones not yet removed.
+	 * 
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return _entries.size();
+	}
+	
+	/**
+	 * Gets the number of lookups of <code>type</code> answered from the cache.
+	 * 
+	 * @param type The entity type.
+	 * @return The number of hits.
+	 */
+	public synchronized long getHitCount(Type type) {
+		return _hits[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the number of lookups of <code>type</code> that found nothing fresh.
+	 * 
+	 * @param type The entity type.
+	 * @return The number of misses.
+	 */
+	public synchronized long getMissCount(Type type) {
+		return _misses[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the fraction of lookups of <code>type</code> answered from the cache.
+	 * 
+	 * @param type The entity type.
+	 * @return The hit rate, between <code>0</code> and <code>1</code>.
+	 */
+	public synchronized double getHitRate(Type type) {
+		long lookups = _hits[type.ordinal()] + _misses[type.ordinal()];
+		
+		return lookups == 0 ? 0 : (double)_hits[type.ordinal()] / lookups;
+	}
+	
+	/**
+	 * Gets the number of downloaded entities of <code>type</code> that were replaced by an equal cached instance.
+	 * 
+	 * @param type The entity type.
+	 * @return The number of interned entities.
+	 */
+	public synchronized long getInternedCount(Type type) {
+		return _interned[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the number of entries evicted to stay within the size bound.
+	 * 
+	 * @return The number of evictions.
+	 */
+	public synchronized long getEvictionCount() {
+		return _evictions;
+	}
+	
+	/**
+	 * Binds this cache to the client built with it.
+	 */
+	synchronized void bind(BLUEClient client) {
+		if(_owner != null && _owner != client) throw new IllegalStateException("The entity cache already belongs to another client.");
+		
+		_owner = client;
+	}
+	
+	/**
+	 * Releases this cache from <code>client</code> so a client replacing it can be built with it.
+	 * The cached models are bound to <code>client</code>, so they are dropped.
+	 */
+	synchronized void release(BLUEClient client) {
+		if(_owner != client) throw new IllegalStateException("The entity cache belongs to another client.");
+		
+		_owner = null;
+		_entries.clear();
+	}
+	
+	private synchronized Object get(Type type, String key) {
+		String cacheKey = cacheKey(type, key);
+		Entry entry = _entries.get(cacheKey);
+		
+		if(entry != null && entry._expiresAt <= System.currentTimeMillis()) {
+			_entries.remove(cacheKey);
+			entry = null;
+		}
+		
+		if(entry == null) {
+			_misses[type.ordinal()]++;
+			return null;
+		}
+		
+		_hits[type.ordinal()]++;
+		return entry._value;
+	}
+	
+	private synchronized void put(Type type, String key, Object value) {
+		long ttl = _ttlMillis[type.ordinal()];
+		
+		if(ttl == 0 || key == null) return;
+		
+		_entries.put(cacheKey(type, key), new Entry(type, value, System.currentTimeMillis() + ttl));
+	}
+	
+	private synchronized Object intern(Type type, String key, Object value) {
+		Entry entry = key == null ? null : _entries.get(cacheKey(type, key));
+		
+		if(entry != null && entry._value.equals(value)) {
+			_interned[type.ordinal()]++;
+			value = entry._value;
+		}
+		
+		put(type, key, value);
+		
+		return value;
+	}
+	
+	private static String cacheKey(Type type, String key) {
+		return type.ordinal() + ":" + key;
+	}
+}
@@ -0,0 +1,407 @@
+/*
+ * The Blue Alliance Java API - EventWatcher.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the matches of live events and reports only the matches that are new or whose
+ * scores changed.
+ * 
+ * <p>All watched events share one scheduler; the requests themselves run on the client's
+ * executor, and each event has at most one request in flight.  Requests are conditional, so
+ * an unchanged match list costs a <code>304</code> and no parsing.  An event whose matches
+ * did not change is polled less often, doubling the interval up to the maximum, and goes back
+ * to the minimum interval as soon as something changes.</p>
+ * 
+ * <p>The first poll of an event reports all of its matches.  Changed matches are added to
+ * the client's <code>MatchIndex</code>, if it has one, before listeners are told.</p>
+ */
+public class EventWatcher implements Closeable {
+	
+	/**
+	 * The default minimum poll interval, in milliseconds.
+	 */
+	public static final long DEFAULT_MIN_INTERVAL = 5000;
+	
+	/**
+	 * The default maximum poll interval, in milliseconds.
+	 */
+	public static final long DEFAULT_MAX_INTERVAL = 120000;
+	
+	/**
+	 * Receives match changes.  Methods are called on the client's executor, one event at a time
+	 * per event key.
+	 */
+	public static interface Listener {
+		/**
+		 * Called with the matches of an event that are new or have new scores.
+		 * 
+		 * @param eventKey The event key.
+		 * @param changed The changed matches, in the order the API returned them.
+		 */
+		void matchesChanged(String eventKey, Matches.Match[] changed);
+		
+		/**
+		 * Called when polling an event fails.  The event is polled again later.
+		 * 
+		 * @param eventKey The event key.
+		 * @param e The failure.
+		 */
+		void pollFailed(String eventKey, BLUEApiException e);
+	}
+	
+	private final BLUEClient _client;
+	private final ScheduledExecutorService _scheduler;
+	private final boolean _ownsScheduler;
+	
+	private volatile long _minInterval = DEFAULT_MIN_INTERVAL;
+	private volatile long _maxInterval = DEFAULT_MAX_INTERVAL;
+	private volatile boolean _closed;
+	
+	private final ConcurrentHashMap<String, Watch> _watches = new ConcurrentHashMap<String, Watch>();
+	private final CopyOnWriteArrayList<Listener> _listeners = new CopyOnWriteArrayList<Listener>();
+	
+	private final AtomicLong _polls = new AtomicLong();
+	private final AtomicLong _unchangedPolls = new AtomicLong();
+	private final AtomicLong _changedMatches = new AtomicLong();
+	private final AtomicLong _failures = new AtomicLong();
+	
+	/**
+	 * Creates an instance of EventWatcher with its own scheduler thread.
+	 * 
+	 * @param client The client to poll through.
+	 */
+	public EventWatcher(BLUEClient client) {
+		this(client, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "EventWatcher-scheduler");
+				t.setDaemon(true);
+				return t;
+			}
+		}), true);
+	}
+	
+	/**
+	 * Creates an instance of EventWatcher that schedules polls on <code>scheduler</code>.
+	 * 
+	 * @param client The client to poll through.
+	 * @param scheduler The scheduler.  It is not shut down by <code>close</code>.
+	 */
+	public EventWatcher(BLUEClient client, ScheduledExecutorService scheduler) {
+		this(client, scheduler, false);
+	}
+	
+	private EventWatcher(BLUEClient client, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+		if(client == null) throw new IllegalArgumentException("client");
+		if(scheduler == null) throw new IllegalArgumentException("scheduler");
+		
+		// Conditional requests need somewhere to keep the last response.
+		_client = client.getEndpointCache() != null ? client : client.toBuilder().endpointCache(new EndpointCache(1024)).build();
+		_scheduler = scheduler;
+		_ownsScheduler = ownsScheduler;
+	}
+	
+	/**
+	 * Sets the poll interval bounds.
+	 * 
+	 * @param min The interval while an event is changing.
+	 * @param max The longest interval an idle event backs off to.
+	 * @param unit The unit of <code>min</code> and <code>max</code>.
+	 */
+	public void setInterval(long min, long max, TimeUnit unit) {
+		if(min <= 0 || max < min) throw new IllegalArgumentException("interval");
+		
+		_minInterval = unit.toMillis(min);
+		_maxInterval = unit.toMillis(max);
+	}
+	
+	/**
+	 * Adds a listener.
+	 * 
+	 * @param listener The listener.
+	 */
+	public void addListener(Listener listener) {
+		if(listener == null) throw new IllegalArgumentException("listener");
+		
+		_listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener.
+	 * 
+	 * @param listener The listener.
+	 */
+	public void removeListener(Listener listener) {
+		_listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts watching an event.  Watching an event that is already watched does nothing.
+	 * 
+	 * @param eventKey The event key, such as <code>2014casj</code>.
+	 */
+	public void watch(String eventKey) {
+		if(_closed) throw new IllegalStateException("The watcher is closed.");
+		
+		Watch watch = new Watch(eventKey);
+		
+		if(_watches.putIfAbsent(eventKey, watch) != null) return;
+		
+		// Spread the first polls out so many events do not poll in lockstep.
+		watch.schedule(ThreadLocalRandom.current().nextLong(_minInterval));
+	}
+	
+	/**
+	 * Stops watching an event.
+	 * 
+	 * @param eventKey The event key.
+	 */
+	public void unwatch(String eventKey) {
+		Watch watch = _watches.remove(eventKey);
+		
+		if(watch != null) watch.cancel();
+	}
+	
+	/**
+	 * Determines if an event is being watched.
+	 * 
+	 * @param eventKey The event key.
+	 * @return <code>true</code> if the event is watched; <code>false</code> otherwise.
+	 */
+	public boolean isWatching(String eventKey) {
+		return _watches.containsKey(eventKey);
+	}
+	
+	/**
+	 * Gets the number of events being watched.
+	 * 
+	 * @return The number of events.
+	 */
+	public int size() {
+		return _watches.size();
+	}
+	
+	/**
+	 * Gets the current poll interval of an event.
+	 * 
+	 * @param eventKey The event key.
+	 * @return The interval in milliseconds, or <code>-1</code> if the event is not watched.
+	 */
+	public long getInterval(String eventKey) {
+		Watch watch = _watches.get(eventKey);
+		
+		return watch == null ? -1 : watch._interval;
+	}
+	
+	/**
+	 * Gets the number of polls made.
+	 * 
+	 * @return The number of polls.
+	 */
+	public long getPollCount() {
+		return _polls.get();
+	}
+	
+	/**
+	 * Gets the number of polls that found no changes.
+	 * 
+	 * @return The number of unchanged polls.
+	 */
+	public long getUnchangedPollCount() {
+		return _unchangedPolls.get();
+	}
+	
+	/**
+	 * Gets the number of new or changed matches reported.
+	 * 
+	 * @return The number of matches reported.
+	 */
+	public long getChangedMatchCount() {
+		return _changedMatches.get();
+	}
+	
+	/**
+	 * Gets the number of polls that failed.
+	 * 
+	 * @return The number of failures.
+	 */
+	public long getFailureCount() {
+		return _failures.get();
+	}
+	
+	/**
+	 * Stops watching every event, and shuts down the scheduler if the watcher created it.
+	 */
+	public void close() {
+		_closed = true;
+		
+		for(String eventKey : _watches.keySet()) {
+			unwatch(eventKey);
+		}
+		
+		if(_ownsScheduler) _scheduler.shutdownNow();
+	}
+	
+	/**
+	 * The state of one watched event.  Only one poll runs at a time, and each poll schedules the next.
+	 */
+	private final class Watch implements Runnable {
+		final String _eventKey;
+		final String _apiReq;
+		volatile long _interval;
+		volatile boolean _cancelled;
+		volatile ScheduledFuture<?> _next;
+		
+		Matches.Match[] _last;
+		HashMap<String, Matches.Match> _byKey;
+		
+		Watch(String eventKey) {
+			_eventKey = eventKey;
+			_apiReq = "/event/" + eventKey + "/matches";
+			_interval = _minInterval;
+		}
+		
+		void schedule(long delay) {
+			if(_cancelled || _closed) return;
+			
+			try {
+				_next = _scheduler.schedule(new Runnable() {
+					public void run() {
+						dispatch();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// The scheduler was shut down; nothing more will be polled.
+			}
+		}
+		
+		void dispatch() {
+			if(_cancelled) return;
+			
+			try {
+				_client.getExecutor().execute(this);
+			} catch (RejectedExecutionException e) {
+				schedule(_interval);
+			}
+		}
+		
+		void cancel() {
+			_cancelled = true;
+			
+			ScheduledFuture<?> next = _next;
+			
+			if(next != null) next.cancel(false);
+		}
+		
+		public void run() {
+			if(_cancelled) return;
+			
+			_polls.incrementAndGet();
+			
+			// Back off unless something changed; the next poll is scheduled even if a listener throws.
+			_interval = Math.min(_interval * 2, _maxInterval);
+			
+			try {
+				poll();
+			} finally {
+				schedule(_interval);
+			}
+		}
+		
+		void poll() {
+			Matches.Match[] matches;
+			
+			try {
+				// Straight to the API: an entity cache would hide live score changes.
+				matches = _client.request(_apiReq, ModelReader.MATCHES);
+			} catch (BLUEApiException e) {
+				_failures.incrementAndGet();
+				
+				for(Listener listener : _listeners) {
+					listener.pollFailed(_eventKey, e);
+				}
+				
+				return;
+			}
+			
+			Matches.Match[] changed = diff(matches);
+			
+			if(changed.length == 0) {
+				_unchangedPolls.incrementAndGet();
+				return;
+			}
+			
+			_changedMatches.addAndGet(changed.length);
+			_interval = _minInterval;
+			
+			MatchIndex index = _client.getMatchIndex();
+			
+			if(index != null) index.addAll(changed);
+			
+			if(_cancelled) return;
+			
+			for(Listener listener : _listeners) {
+				listener.matchesChanged(_eventKey, changed);
+			}
+		}
+		
+		/**
+		 * Finds the matches that are new or have different scores than last time.
+		 */
+		Matches.Match[] diff(Matches.Match[] matches) {
+			Matches.Match[] last = _last;
+			_last = matches;
+			
+			// A 304 hands back the same match objects, so the common case is settled by identity.
+			if(last != null && last.length == matches.length) {
+				boolean same = true;
+				
+				for(int i = 0; i < matches.length && same; i++) {
+					same = matches[i] == last[i];
+				}
+				
+				if(same) return new Matches.Match[0];
+			}
+			
+			HashMap<String, Matches.Match> byKey = new HashMap<String, Matches.Match>(matches.length * 2);
+			List<Matches.Match> changed = new ArrayList<Matches.Match>();
+			
+			for(Matches.Match match : matches) {
+				byKey.put(match._key, match);
+				
+				Matches.Match previous = _byKey == null ? null : _byKey.get(match._key);
+				
+				if(previous == null || previous._redAllianceScore != match._redAllianceScore || previous._blueAllianceScore != match._blueAllianceScore) {
+					changed.add(match);
+				}
+			}
+			
+			_byKey = byKey;
+			
+			return changed.toArray(new Matches.Match[changed.size()]);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * The Blue Alliance Java API - Fanout.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a batch of blocking API calls with bounded parallelism.
+ * 
+ * <p>At most <code>parallelism</code> workers are scheduled on the executor; each one
+ * takes the next pending call until none are left, so no more than that many requests
+ * are ever in flight.  A failed call is recorded in its <code>FetchResult</code> and does
+ * not affect the rest of the batch.  An <code>Error</code> stops the batch and is rethrown
+ * once every worker has finished, so a caller never sees a missing result.</p>
+ */
+final class Fanout {
+	
+	private Fanout() {
+	}
+	
+	/**
+	 * Runs <code>calls</code> and waits for all of them to finish.
+	 * 
+	 * @param executor The executor to run the workers on.
+	 * @param parallelism The maximum number of calls to run at once.
+	 * @param keys The key reported for each call.
+	 * @param calls The calls to run.
+	 * @return The result of each call, in the order of <code>calls</code>.
+	 * @throws BLUEApiException If the calling thread is interrupted while waiting.
+	 * @throws Error If a call threw one, such as an <code>OutOfMemoryError</code>.
+	 */
+	static <T> List<FetchResult<T>> run(Executor executor, int parallelism, final List<String> keys,
+			final List<? extends BLUEClient.ApiCall<T>> calls)
+		throws BLUEApiException
+	{
+		if(parallelism <= 0) throw new IllegalArgumentException("parallelism");
+		
+		final int count = calls.size();
+		final Object[] results = new Object[count];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicReference<Error> error = new AtomicReference<Error>();
+		
+		int workers = Math.min(parallelism, count);
+		final CountDownLatch done = new CountDownLatch(workers);
+		
+		Runnable worker = new Runnable() {
+			public void run() {
+				try {
+					int i;
+					
+					while((i = next.getAndIncrement()) < count) {
+						results[i] = call(keys.get(i), calls.get(i));
+					}
+				} catch (Error e) {
+					error.compareAndSet(null, e);
+					next.set(count);
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+		
+		for(int i = 0; i < workers; i++) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				// Run on the calling thread; it drains whatever the other workers have not taken.
+				worker.run();
+			}
+		}
+		
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			next.set(count);
+			Thread.currentThread().interrupt();
+			throw new BLUEApiException("Interrupted while waiting for a bulk request.", e);
+		}
+		
+		if(error.get() != null) throw error.get();
+		
+		List<FetchResult<T>> list = new ArrayList<FetchResult<T>>(count);
+		
+		for(Object result : results) {
+			@SuppressWarnings("unchecked")
+			FetchResult<T> typed = (FetchResult<T>)result;
+			list.add(typed);
+		}
+		
+		return list;
+	}
+	
+	private static <T> FetchResult<T> call(String key, BLUEClient.ApiCall<T> call) {
+		try {
+			return new FetchResult<T>(key, call.call(), null);
+		} catch (BLUEApiException e) {
+			return new FetchResult<T>(key, null, e);
+		} catch (RuntimeException e) {
+			return new FetchResult<T>(key, null, new BLUEApiException("Unexpected error.", e));
+		}
+	}
+}
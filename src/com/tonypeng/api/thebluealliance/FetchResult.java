@@ -0,0 +1,85 @@
+/*
+ * The Blue Alliance Java API - FetchResult.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+
+/**
+ * Represents the outcome of one request in a bulk fetch: either a value or the
+ * exception that request failed with.
+ */
+public final class FetchResult<T> {
+	private final String _key;
+	private final T _value;
+	private final BLUEApiException _exception;
+	
+	FetchResult(String key, T value, BLUEApiException exception) {
+		_key = key;
+		_value = value;
+		_exception = exception;
+	}
+	
+	/**
+	 * Gets the API key of the requested entity, such as <code>frc254</code>.
+	 * 
+	 * @return The requested key.
+	 */
+	public String getKey() {
+		return _key;
+	}
+	
+	/**
+	 * Determines if the request succeeded.
+	 * 
+	 * @return <code>true</code> if the request succeeded; <code>false</code> otherwise.
+	 */
+	public boolean isSuccess() {
+		return _exception == null;
+	}
+	
+	/**
+	 * Gets the fetched value.
+	 * 
+	 * @return The fetched value, or <code>null</code> if the request failed.
+	 */
+	public T getValue() {
+		return _value;
+	}
+	
+	/**
+	 * Gets the exception the request failed with.
+	 * 
+	 * @return The exception, or <code>null</code> if the request succeeded.
+	 */
+	public BLUEApiException getException() {
+		return _exception;
+	}
+	
+	/**
+	 * Gets the fetched value, rethrowing the request's exception if it failed.
+	 * 
+	 * @return The fetched value.
+	 * @throws BLUEApiException
+	 */
+	public T get()
+		throws BLUEApiException
+	{
+		if(_exception != null) throw _exception;
+		
+		return _value;
+	}
+	
+	/**
+	 * Returns the <code>String</code> representation of this <code>FetchResult</code>.
+	 */
+	public String toString() {
+		return String.format("{ %s, %s }", _key, isSuccess() ? String.valueOf(_value) : _exception.toString());
+	}
+}
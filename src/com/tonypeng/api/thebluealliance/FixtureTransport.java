@@ -0,0 +1,300 @@
+/*
+ * The Blue Alliance Java API - FixtureTransport.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>Transport</code> that serves JSON fixtures from memory instead of the network.
+ * 
+ * <p>Fixtures are keyed by API path, such as <code>/team/frc254</code> or
+ * <code>/event/2014casj/matches</code>, so the client's API base is ignored.  Unknown paths
+ * get a <code>404</code>.  Each fixture is served with an <code>ETag</code>, and a matching
+ * <code>If-None-Match</code> gets a <code>304</code>.</p>
+ * 
+ * <p>Latency and failures can be injected.  Both are drawn from a random sequence derived
+ * from the seed and the request number, so a single-threaded run is fully repeatable.</p>
+ */
+public class FixtureTransport implements Transport {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static class Fixture {
+		final byte[] _body;
+		final String _etag;
+		
+		Fixture(byte[] body) {
+			_body = body;
+			_etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "-" + body.length + "\"";
+		}
+	}
+	
+	private final ConcurrentHashMap<String, Fixture> _fixtures = new ConcurrentHashMap<String, Fixture>();
+	
+	private volatile long _seed;
+	private volatile long _latencyMillis;
+	private volatile long _latencyJitterMillis;
+	private volatile double _ioErrorRate;
+	private volatile double _serverErrorRate;
+	
+	private final AtomicLong _requests = new AtomicLong();
+	private final AtomicLong _notModified = new AtomicLong();
+	private final AtomicLong _injectedErrors = new AtomicLong();
+	
+	/**
+	 * Creates an instance of FixtureTransport with no fixtures, no latency and no failures.
+	 */
+	public FixtureTransport() {
+	}
+	
+	/**
+	 * Creates a FixtureTransport serving every <code>.json</code> file below <code>dir</code>.
+	 * A file's path relative to <code>dir</code>, without the extension, is its API path:
+	 * <code>event/2014casj/matches.json</code> is served for <code>/event/2014casj/matches</code>.
+	 * 
+	 * @param dir The fixture directory.
+	 * @return A new <code>FixtureTransport</code>.
+	 * @throws IOException If a fixture cannot be read.
+	 */
+	public static FixtureTransport fromDirectory(File dir)
+		throws IOException
+	{
+		if(!dir.isDirectory()) throw new IOException("Not a directory: " + dir);
+		
+		FixtureTransport transport = new FixtureTransport();
+		transport.load(dir, "");
+		
+		return transport;
+	}
+	
+	private void load(File dir, String prefix)
+		throws IOException
+	{
+		File[] files = dir.listFiles();
+		
+		if(files == null) throw new IOException("Could not list " + dir);
+		
+		for(File file : files) {
+			String name = file.getName();
+			
+			if(file.isDirectory()) {
+				load(file, prefix + "/" + name);
+			} else if(name.endsWith(".json")) {
+				addFixture(prefix + "/" + name.substring(0, name.length() - 5), readFully(file));
+			}
+		}
+	}
+	
+	private static byte[] readFully(File file)
+		throws IOException
+	{
+		byte[] data = new byte[(int)file.length()];
+		InputStream in = new FileInputStream(file);
+		
+		try {
+			int off = 0;
+			int n;
+			
+			while(off < data.length && (n = in.read(data, off, data.length - off)) >= 0) {
+				off += n;
+			}
+		} finally {
+			in.close();
+		}
+		
+		return data;
+	}
+	
+	/**
+	 * Serves <code>json</code> for <code>path</code>.
+	 * 
+	 * @param path The API path, such as <code>/team/frc254</code>.
+	 * @param json The response body.
+	 * @return This transport.
+	 */
+	public FixtureTransport addFixture(String path, String json) {
+		return addFixture(path, json.getBytes(UTF_8));
+	}
+	
+	/**
+	 * Serves <code>body</code> for <code>path</code>.
+	 * 
+	 * @param path The API path, such as <code>/team/frc254</code>.
+	 * @param body The response body, encoded as UTF-8.
+	 * @return This transport.
+	 */
+	public FixtureTransport addFixture(String path, byte[] body) {
+		_fixtures.put(path, new Fixture(body.clone()));
+		return this;
+	}
+	
+	/**
+	 * Stops serving <code>path</code>.
+	 * 
+	 * @param path The API path.
+	 * @return This transport.
+	 */
+	public FixtureTransport removeFixture(String path) {
+		_fixtures.remove(path);
+		return this;
+	}
+	
+	/**
+	 * Sets the seed of the random sequence used for latency jitter and failures.
+	 * 
+	 * @param seed The seed.
+	 * @return This transport.
+	 */
+	public FixtureTransport setSeed(long seed) {
+		_seed = seed;
+		return this;
+	}
+	
+	/**
+	 * Delays every response by <code>millis</code> plus a uniformly distributed jitter.
+	 * 
+	 * @param millis The base latency in milliseconds.
+	 * @param jitterMillis The maximum additional latency in milliseconds.
+	 * @return This transport.
+	 */
+	public FixtureTransport setLatency(long millis, long jitterMillis) {
+		if(millis < 0 || jitterMillis < 0) throw new IllegalArgumentException("latency");
+		
+		_latencyMillis = millis;
+		_latencyJitterMillis = jitterMillis;
+		return this;
+	}
+	
+	/**
+	 * Fails a fraction of requests.
+	 * 
+	 * @param ioErrorRate The fraction of requests that throw an <code>IOException</code>.
+	 * @param serverErrorRate The fraction of requests answered with <code>500</code>.
+	 * @return This transport.
+	 */
+	public FixtureTransport setErrorRates(double ioErrorRate, double serverErrorRate) {
+		if(ioErrorRate < 0 || serverErrorRate < 0 || ioErrorRate + serverErrorRate > 1) throw new IllegalArgumentException("errorRate");
+		
+		_ioErrorRate = ioErrorRate;
+		_serverErrorRate = serverErrorRate;
+		return this;
+	}
+	
+	/**
+	 * Gets the number of requests received.
+	 * 
+	 * @return The number of requests.
+	 */
+	public long getRequestCount() {
+		return _requests.get();
+	}
+	
+	/**
+	 * Gets the number of requests answered with <code>304 Not Modified</code>.
+	 * 
+	 * @return The number of <code>304</code> responses.
+	 */
+	public long getNotModifiedCount() {
+		return _notModified.get();
+	}
+	
+	/**
+	 * Gets the number of injected failures.
+	 * 
+	 * @return The number of injected failures.
+	 */
+	public long getInjectedErrorCount() {
+		return _injectedErrors.get();
+	}
+	
+	public Transport.Response execute(Transport.Request request)
+		throws IOException
+	{
+		long n = _requests.getAndIncrement();
+		Random random = new Random(_seed + n * 0x9E3779B97F4A7C15L);
+		
+		long delay = _latencyMillis;
+		if(_latencyJitterMillis > 0) delay += (long)(random.nextDouble() * (_latencyJitterMillis + 1));
+		
+		if(delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while simulating latency.");
+			}
+		}
+		
+		double roll = random.nextDouble();
+		
+		if(roll < _ioErrorRate) {
+			_injectedErrors.incrementAndGet();
+			throw new IOException("Injected I/O failure for " + request.getPath());
+		}
+		
+		if(roll < _ioErrorRate + _serverErrorRate) {
+			_injectedErrors.incrementAndGet();
+			return new FixtureResponse(500, null, "{\"Errors\":[\"Injected server error\"]}".getBytes(UTF_8));
+		}
+		
+		Fixture fixture = _fixtures.get(request.getPath());
+		
+		if(fixture == null) {
+			return new FixtureResponse(404, null, "{\"404\":\"Not found\"}".getBytes(UTF_8));
+		}
+		
+		if(fixture._etag.equals(request.getHeaders().get("If-None-Match"))) {
+			_notModified.incrementAndGet();
+			return new FixtureResponse(304, fixture._etag, new byte[0]);
+		}
+		
+		return new FixtureResponse(200, fixture._etag, fixture._body);
+	}
+	
+	private static class FixtureResponse implements Transport.Response {
+		private final int _status;
+		private final String _etag;
+		private final byte[] _body;
+		
+		FixtureResponse(int status, String etag, byte[] body) {
+			_status = status;
+			_etag = etag;
+			_body = body;
+		}
+		
+		public int getStatus() {
+			return _status;
+		}
+		
+		public String getHeader(String name) {
+			if("ETag".equalsIgnoreCase(name)) return _etag;
+			if("Content-Type".equalsIgnoreCase(name)) return "application/json; charset=utf-8";
+			
+			return null;
+		}
+		
+		public InputStream getBody() {
+			return new ByteArrayInputStream(_body);
+		}
+		
+		public void close() {
+		}
+	}
+}
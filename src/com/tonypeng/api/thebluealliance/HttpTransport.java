@@ -0,0 +1,329 @@
+/*
+ * The Blue Alliance Java API - HttpTransport.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The default <code>Transport</code>, built on <code>HttpURLConnection</code>.
+ * 
+ * <p>Connections are pooled by the JDK's keep-alive cache.  This transport makes that
+ * pooling reliable: every response body, including error bodies, is drained before the
+ * connection is released (or the connection is dropped, if a body closed early has too
+ * much left to drain), and no more than <code>maxConnectionsPerHost</code> requests
+ * run against one host at a time.  A request waits no longer than its connect and read
+ * timeouts combined for a free connection, and then fails.  Responses are requested with
+ * <code>Accept-Encoding: gzip, deflate</code> and decoded transparently.</p>
+ * 
+ * <p><code>HttpURLConnection</code> does not report whether a request went over a pooled
+ * connection, so the opened and reused counters are estimated from this transport's own
+ * bookkeeping of connections it released in a reusable state.  It speaks HTTP/1.1 only.</p>
+ */
+public class HttpTransport implements Transport, Transport.Abortable {
+	
+	/**
+	 * The default maximum number of concurrent connections per host.  It matches the
+	 * JDK's default <code>http.maxConnections</code> keep-alive pool size.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+	
+	private static final int DRAIN_LIMIT = 64 * 1024;
+	private static final long DEFAULT_KEEP_ALIVE_MILLIS = 5000;
+	
+	private final int _maxConnectionsPerHost;
+	private final ConcurrentHashMap<String, Host> _hosts = new ConcurrentHashMap<String, Host>();
+	private final ConcurrentHashMap<Thread, HttpURLConnection> _sending = new ConcurrentHashMap<Thread, HttpURLConnection>();
+	
+	private final AtomicLong _requests = new AtomicLong();
+	private final AtomicLong _opened = new AtomicLong();
+	private final AtomicLong _reused = new AtomicLong();
+	private final AtomicLong _compressed = new AtomicLong();
+	
+	/**
+	 * Per-host connection limit and the release times of connections believed to be idle in the pool.
+	 */
+	private static class Host {
+		final Semaphore _permits;
+		final ArrayDeque<Long> _idleUntil = new ArrayDeque<Long>();
+		
+		Host(int permits) {
+			_permits = new Semaphore(permits, true);
+		}
+		
+		synchronized boolean takeIdle(long now) {
+			while(!_idleUntil.isEmpty()) {
+				if(_idleUntil.pollLast() > now) return true;
+			}
+			
+			return false;
+		}
+		
+		synchronized void putIdle(long until, int max) {
+			_idleUntil.addLast(until);
+			
+			while(_idleUntil.size() > max) _idleUntil.pollFirst();
+		}
+	}
+	
+	/**
+	 * Creates an instance of HttpTransport with the default per-host connection limit.
+	 */
+	public HttpTransport() {
+		this(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+	}
+	
+	/**
+	 * Creates an instance of HttpTransport.
+	 * 
+	 * @param maxConnectionsPerHost The maximum number of concurrent connections per host.
+	 */
+	public HttpTransport(int maxConnectionsPerHost) {
+		if(maxConnectionsPerHost <= 0) throw new IllegalArgumentException("maxConnectionsPerHost");
+		
+		_maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+	
+	/**
+	 * Gets the maximum number of concurrent connections per host.
+	 * 
+	 * @return The per-host connection limit.
+	 */
+	public int getMaxConnectionsPerHost() {
+		return _maxConnectionsPerHost;
+	}
+	
+	/**
+	 * Gets the number of requests sent.
+	 * 
+	 * @return The number of requests.
+	 */
+	public long getRequestCount() {
+		return _requests.get();
+	}
+	
+	/**
+	 * Gets the estimated number of new connections opened.
+	 * 
+	 * @return The number of connections opened.
+	 */
+	public long getConnectionsOpened() {
+		return _opened.get();
+	}
+	
+	/**
+	 * Gets the estimated number of requests sent over a pooled connection.
+	 * 
+	 * @return The number of connections reused.
+	 */
+	public long getConnectionsReused() {
+		return _reused.get();
+	}
+	
+	/**
+	 * Gets the number of responses that arrived with a gzip or deflate content encoding.
+	 * 
+	 * @return The number of compressed responses.
+	 */
+	public long getCompressedResponseCount() {
+		return _compressed.get();
+	}
+	
+	public Transport.Response execute(Transport.Request request)
+		throws IOException
+	{
+		URL url = new URL(request.getUrl());
+		String hostKey = url.getProtocol() + "://" + url.getAuthority();
+		
+		Host host = _hosts.get(hostKey);
+		
+		if(host == null) {
+			Host created = new Host(_maxConnectionsPerHost);
+			host = _hosts.putIfAbsent(hostKey, created);
+			if(host == null) host = created;
+		}
+		
+		// A response that is never closed keeps its permit, so waiting is bounded by the request's timeouts.
+		long wait = request.getConnectTimeout() > 0 && request.getReadTimeout() > 0 ? (long)request.getConnectTimeout() + request.getReadTimeout() : 0;
+		
+		try {
+			if(wait == 0) {
+				host._permits.acquire();
+			} else if(!host._permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+				throw new IOException("Timed out waiting for a connection to " + hostKey + "; all " + _maxConnectionsPerHost + " of its connections are held by open responses.  A stream that is not read to the end must be closed.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection to " + hostKey);
+		}
+		
+		boolean released = false;
+		HttpURLConnection conn = null;
+		
+		try {
+			_requests.incrementAndGet();
+			
+			if(host.takeIdle(System.currentTimeMillis())) {
+				_reused.incrementAndGet();
+			} else {
+				_opened.incrementAndGet();
+			}
+			
+			conn = (HttpURLConnection)url.openConnection();
+			
+			_sending.put(Thread.currentThread(), conn);
+			
+			conn.setRequestMethod("GET");
+			conn.setUseCaches(false);
+			conn.setConnectTimeout(request.getConnectTimeout());
+			conn.setReadTimeout(request.getReadTimeout());
+			conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+			
+			for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				conn.setRequestProperty(header.getKey(), header.getValue());
+			}
+			
+			// Connecting explicitly separates connect time from time to first byte.  It returns at once for a pooled connection.
+			long connectStart = System.nanoTime();
+			conn.connect();
+			long connectNanos = System.nanoTime() - connectStart;
+			
+			int status = conn.getResponseCode();
+			
+			InputStream raw = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+			
+			if(raw == null) raw = new ByteArrayInputStream(new byte[0]);
+			
+			released = true;
+			
+			return new HttpResponse(host, conn, status, raw, connectNanos);
+		} catch (IOException e) {
+			// abort() takes the connection out of _sending before disconnecting it.
+			if(conn != null && !_sending.remove(Thread.currentThread(), conn)) throw new Transport.AbortedException(e);
+			
+			throw e;
+		} finally {
+			_sending.remove(Thread.currentThread());
+			
+			if(!released) host._permits.release();
+		}
+	}
+	
+	/**
+	 * Abandons the request a thread is waiting on by disconnecting its connection.
+	 */
+	public boolean abort(Thread thread) {
+		HttpURLConnection conn = _sending.remove(thread);
+		
+		if(conn == null) return false;
+		
+		conn.disconnect();
+		
+		return true;
+	}
+	
+	private class HttpResponse implements Transport.Response, Transport.Timing {
+		private final Host _host;
+		private final HttpURLConnection _conn;
+		private final int _status;
+		private final InputStream _raw;
+		private final long _connectNanos;
+		private InputStream _body;
+		private boolean _closed;
+		
+		HttpResponse(Host host, HttpURLConnection conn, int status, InputStream raw, long connectNanos) {
+			_host = host;
+			_conn = conn;
+			_status = status;
+			_raw = raw;
+			_connectNanos = connectNanos;
+		}
+		
+		public long getConnectNanos() {
+			return _connectNanos;
+		}
+		
+		public int getStatus() {
+			return _status;
+		}
+		
+		public String getHeader(String name) {
+			return _conn.getHeaderField(name);
+		}
+		
+		public synchronized InputStream getBody()
+			throws IOException
+		{
+			if(_body == null) {
+				String encoding = _conn.getContentEncoding();
+				
+				if("gzip".equalsIgnoreCase(encoding)) {
+					_compressed.incrementAndGet();
+					_body = new GZIPInputStream(_raw);
+				} else if("deflate".equalsIgnoreCase(encoding)) {
+					_compressed.incrementAndGet();
+					_body = new InflaterInputStream(_raw);
+				} else {
+					_body = _raw;
+				}
+			}
+			
+			return _body;
+		}
+		
+		public synchronized void close()
+			throws IOException
+		{
+			if(_closed) return;
+			
+			_closed = true;
+			
+			try {
+				// Reading the rest of the raw stream lets the JDK return the connection to its keep-alive pool.
+				byte[] buffer = new byte[8192];
+				int drained = 0;
+				int n = 0;
+				
+				while(drained < DRAIN_LIMIT && (n = _raw.read(buffer)) >= 0) {
+					drained += n;
+				}
+				
+				if(n < 0) {
+					if(!"close".equalsIgnoreCase(_conn.getHeaderField("Connection"))) {
+						_host.putIdle(System.currentTimeMillis() + DEFAULT_KEEP_ALIVE_MILLIS, _maxConnectionsPerHost);
+					}
+				} else {
+					// Too much of the body is left to be worth reading; drop the connection instead.
+					_conn.disconnect();
+				}
+			} catch (IOException e) {
+				// The connection is unusable; closing it below discards it.
+			} finally {
+				try {
+					_raw.close();
+				} finally {
+					_host._permits.release();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * The Blue Alliance Java API - InMemoryInstrumentation.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps measurements in memory, as a latency histogram per template and phase plus counters.
+ */
+public class InMemoryInstrumentation implements Instrumentation {
+	
+	/**
+	 * A histogram of durations with logarithmic buckets, eight per power of two, so any
+	 * recorded value is reported within 12.5%.
+	 */
+	public static final class Histogram {
+		private static final int SUB_BUCKETS = 8;
+		
+		private final AtomicLongArray _buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+		private final AtomicLong _count = new AtomicLong();
+		private final AtomicLong _sum = new AtomicLong();
+		private final AtomicLong _max = new AtomicLong();
+		
+		Histogram() {
+		}
+		
+		void record(long nanos) {
+			if(nanos < 0) nanos = 0;
+			
+			_buckets.incrementAndGet(bucket(nanos));
+			_count.incrementAndGet();
+			_sum.addAndGet(nanos);
+			
+			long max;
+			
+			while(nanos > (max = _max.get()) && !_max.compareAndSet(max, nanos)) {
+			}
+		}
+		
+		private static int bucket(long value) {
+			if(value < SUB_BUCKETS) return (int)value;
+			
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int fraction = (int)(value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+			
+			return (exponent - 2) * SUB_BUCKETS + fraction;
+		}
+		
+		private static long upperBound(int bucket) {
+			if(bucket < SUB_BUCKETS) return bucket;
+			
+			int exponent = bucket / SUB_BUCKETS + 2;
+			long fraction = bucket % SUB_BUCKETS;
+			
+			return ((SUB_BUCKETS + fraction + 1) << (exponent - 3)) - 1;
+		}
+		
+		/**
+		 * Gets the number of recorded values.
+		 * 
+		 * @return The count.
+		 */
+		public long getCount() {
+			return _count.get();
+		}
+		
+		/**
+		 * Gets the sum of recorded values.
+		 * 
+		 * @return The total, in nanoseconds.
+		 */
+		public long getTotalNanos() {
+			return _sum.get();
+		}
+		
+		/**
+		 * Gets the mean recorded value.
+		 * 
+		 * @return The mean in nanoseconds, or <code>0</code> if nothing was recorded.
+		 */
+		public double getMeanNanos() {
+			long count = _count.get();
+			
+			return count == 0 ? 0 : (double)_sum.get() / count;
+		}
+		
+		/**
+		 * Gets the largest recorded value.
+		 * 
+		 * @return The maximum, in nanoseconds.
+		 */
+		public long getMaxNanos() {
+			return _max.get();
+		}
+		
+		/**
+		 * Gets a percentile of the recorded values.
+		 * 
+		 * @param percentile The percentile, from <code>0</code> to <code>100</code>.
+		 * @return An upper bound of the percentile in nanoseconds, or <code>0</code> if nothing was recorded.
+		 */
+		public long getPercentileNanos(double percentile) {
+			long count = _count.get();
+			
+			if(count == 0) return 0;
+			
+			long rank = Math.max(1, (long)Math.ceil(count * percentile / 100));
+			long seen = 0;
+			
+			for(int i = 0; i < _buckets.length(); i++) {
+				seen += _buckets.get(i);
+				
+				if(seen >= rank) return Math.min(upperBound(i), _max.get());
+			}
+			
+			return _max.get();
+		}
+	}
+	
+	/**
+	 * The measurements of one template.
+	 */
+	private static final class Stats {
+		final AtomicLong _bytes = new AtomicLong();
+		final ConcurrentHashMap<Phase, Histogram> _phases = new ConcurrentHashMap<Phase, Histogram>();
+		final ConcurrentHashMap<Integer, AtomicLong> _statuses = new ConcurrentHashMap<Integer, AtomicLong>();
+		final AtomicLongArray _outcomes = new AtomicLongArray(CacheOutcome.values().length);
+		final ConcurrentHashMap<String, AtomicLong> _failures = new ConcurrentHashMap<String, AtomicLong>();
+	}
+	
+	private final ConcurrentHashMap<String, Stats> _stats = new ConcurrentHashMap<String, Stats>();
+	
+	private Stats stats(String template) {
+		Stats stats = _stats.get(template);
+		
+		if(stats == null) {
+			Stats created = new Stats();
+			stats = _stats.putIfAbsent(template, created);
+			if(stats == null) stats = created;
+		}
+		
+		return stats;
+	}
+	
+	private static AtomicLong counter(ConcurrentHashMap<?, AtomicLong> map, Object key) {
+		@SuppressWarnings("unchecked")
+		ConcurrentHashMap<Object, AtomicLong> counters = (ConcurrentHashMap<Object, AtomicLong>)map;
+		AtomicLong counter = counters.get(key);
+		
+		if(counter == null) {
+			AtomicLong created = new AtomicLong();
+			counter = counters.putIfAbsent(key, created);
+			if(counter == null) counter = created;
+		}
+		
+		return counter;
+	}
+	
+	public void recordPhase(String template, Phase phase, long nanos) {
+		Stats stats = stats(template);
+		Histogram histogram = stats._phases.get(phase);
+		
+		if(histogram == null) {
+			Histogram created = new Histogram();
+			histogram = stats._phases.putIfAbsent(phase, created);
+			if(histogram == null) histogram = created;
+		}
+		
+		histogram.record(nanos);
+	}
+	
+	public void recordResponse(String template, int status) {
+		counter(stats(template)._statuses, status).incrementAndGet();
+	}
+	
+	public void recordBytes(String template, long bytes) {
+		stats(template)._bytes.addAndGet(bytes);
+	}
+	
+	public void recordCacheOutcome(String template, CacheOutcome outcome) {
+		stats(template)._outcomes.incrementAndGet(outcome.ordinal());
+	}
+	
+	public void recordFailure(String template, Throwable failure) {
+		// Name the underlying failure rather than the wrapper every caller sees.
+		Throwable cause = failure;
+		
+		if(cause instanceof BLUEApiException && ((BLUEApiException)cause).getInnerException() != null) {
+			cause = ((BLUEApiException)cause).getInnerException();
+		}
+		
+		counter(stats(template)._failures, cause.getClass().getName()).incrementAndGet();
+	}
+	
+	/**
+	 * Gets the templates that have measurements.
+	 * 
+	 * @return The templates, in sorted order.
+	 */
+	public Set<String> getTemplates() {
+		return new TreeSet<String>(_stats.keySet());
+	}
+	
+	/**
+	 * Gets the histogram of a phase.
+	 * 
+	 * @param template The endpoint template or model name.
+	 * @param phase The phase.
+	 * @return The histogram, or <code>null</code> if nothing was recorded.
+	 */
+	public Histogram getHistogram(String template, Phase phase) {
+		Stats stats = _stats.get(template);
+		
+		return stats == null ? null : stats._phases.get(phase);
+	}
+	
+	/**
+	 * Gets the total body bytes read.
+	 * 
+	 * @param template The endpoint template.
+	 * @return The number of bytes.
+	 */
+	public long getBytes(String template) {
+		Stats stats = _stats.get(template);
+		
+		return stats == null ? 0 : stats._bytes.get();
+	}
+	
+	/**
+	 * Gets the number of responses with each status.
+	 * 
+	 * @param template The endpoint template.
+	 * @return The counts by status.
+	 */
+	public Map<Integer, Long> getStatusCounts(String template) {
+		return snapshot(_stats.get(template) == null ? null : _stats.get(template)._statuses);
+	}
+	
+	/**
+	 * Gets the number of calls with a cache outcome.
+	 * 
+	 * @param template The endpoint template.
+	 * @param outcome The outcome.
+	 * @return The count.
+	 */
+	public long getCacheOutcomeCount(String template, CacheOutcome outcome) {
+		Stats stats = _stats.get(template);
+		
+		return stats == null ? 0 : stats._outcomes.get(outcome.ordinal());
+	}
+	
+	/**
+	 * Gets the number of failures of each exception type.
+	 * 
+	 * @param template The endpoint template.
+	 * @return The counts by exception class name.
+	 */
+	public Map<String, Long> getFailureCounts(String template) {
+		return snapshot(_stats.get(template) == null ? null : _stats.get(template)._failures);
+	}
+	
+	private static <K> Map<K, Long> snapshot(ConcurrentHashMap<K, AtomicLong> counters) {
+		Map<K, Long> snapshot = new TreeMap<K, Long>();
+		
+		if(counters != null) {
+			for(Map.Entry<K, AtomicLong> entry : counters.entrySet()) {
+				snapshot.put(entry.getKey(), entry.getValue().get());
+			}
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Discards every measurement.
+	 */
+	public void reset() {
+		_stats.clear();
+	}
+	
+	/**
+	 * Formats every measurement as a table, one row per template and phase.
+	 * 
+	 * @return The report.
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-28s %-10s %8s %10s %10s %10s %10s%n", "Template", "Phase", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+		
+		for(String template : getTemplates()) {
+			Stats stats = _stats.get(template);
+			
+			for(Phase phase : Phase.values()) {
+				Histogram h = stats._phases.get(phase);
+				
+				if(h == null) continue;
+				
+				sb.append(String.format("%-28s %-10s %8d %10.3f %10.3f %10.3f %10.3f%n", template, phase.name(), h.getCount(), h.getMeanNanos() / 1e6,
+						h.getPercentileNanos(50) / 1e6, h.getPercentileNanos(99) / 1e6, h.getMaxNanos() / 1e6));
+			}
+			
+			StringBuilder outcomes = new StringBuilder();
+			
+			for(CacheOutcome outcome : CacheOutcome.values()) {
+				long n = stats._outcomes.get(outcome.ordinal());
+				
+				if(n > 0) outcomes.append(' ').append(outcome.name()).append('=').append(n);
+			}
+			
+			// Model names only have mapping times.
+			if(stats._bytes.get() == 0 && stats._statuses.isEmpty() && outcomes.length() == 0 && stats._failures.isEmpty()) continue;
+			
+			sb.append(String.format("%-28s bytes=%d statuses=%s%s failures=%s%n", template, stats._bytes.get(), snapshot(stats._statuses), outcomes, snapshot(stats._failures)));
+		}
+		
+		return sb.toString();
+	}
+}
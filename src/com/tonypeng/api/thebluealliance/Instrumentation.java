@@ -0,0 +1,115 @@
+/*
+ * The Blue Alliance Java API - Instrumentation.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+/**
+ * Receives measurements from a <code>BLUEClient</code>.
+ * 
+ * <p>Measurements are keyed by endpoint template, the request path with its keys and years
+ * replaced by placeholders, such as <code>/event/{key}/matches</code>.  Mapping time from
+ * <code>parseTeam</code>, <code>parseEvent</code> and <code>parseMatch</code> is keyed by the model
+ * name (<code>Team</code>, <code>Event</code>, <code>Match</code>) instead.  Methods are called on
+ * the requesting thread and must be thread-safe and fast.</p>
+ */
+public interface Instrumentation {
+	
+	/**
+	 * A timed phase of a request.
+	 */
+	public static enum Phase {
+		/** Opening the connection, when the transport reports it. */
+		CONNECT,
+		/** Sending the request until the response headers arrive, including <code>CONNECT</code>. */
+		FIRST_BYTE,
+		/** Waiting on the body's input stream. */
+		READ,
+		/** Parsing the body, excluding <code>READ</code>.  Bodies read straight into models include mapping here. */
+		PARSE,
+		/** Mapping a JSON tree to a model object. */
+		MAP
+	}
+	
+	/**
+	 * Where a call's result came from.
+	 */
+	public static enum CacheOutcome {
+		/** A full response was downloaded. */
+		MISS,
+		/** The server answered <code>304</code> and a cached response was used. */
+		NOT_MODIFIED,
+		/** The entity cache answered without a request. */
+		ENTITY_HIT,
+		/** The disk store answered without a request, or because the server could not be reached. */
+		DISK,
+		/** Another caller's in-flight request answered. */
+		COALESCED
+	}
+	
+	/**
+	 * Instrumentation that discards every measurement.
+	 */
+	public static final Instrumentation NOOP = new Instrumentation() {
+		public void recordPhase(String template, Phase phase, long nanos) {
+		}
+		
+		public void recordResponse(String template, int status) {
+		}
+		
+		public void recordBytes(String template, long bytes) {
+		}
+		
+		public void recordCacheOutcome(String template, CacheOutcome outcome) {
+		}
+		
+		public void recordFailure(String template, Throwable failure) {
+		}
+	};
+	
+	/**
+	 * Records the duration of a phase.
+	 * 
+	 * @param template The endpoint template or model name.
+	 * @param phase The phase.
+	 * @param nanos The duration, in nanoseconds.
+	 */
+	void recordPhase(String template, Phase phase, long nanos);
+	
+	/**
+	 * Records a response status.
+	 * 
+	 * @param template The endpoint template.
+	 * @param status The HTTP status.
+	 */
+	void recordResponse(String template, int status);
+	
+	/**
+	 * Records the size of a response body.
+	 * 
+	 * @param template The endpoint template.
+	 * @param bytes The decoded body size.
+	 */
+	void recordBytes(String template, long bytes);
+	
+	/**
+	 * Records where a call's result came from.
+	 * 
+	 * @param template The endpoint template.
+	 * @param outcome The outcome.
+	 */
+	void recordCacheOutcome(String template, CacheOutcome outcome);
+	
+	/**
+	 * Records a failed call.
+	 * 
+	 * @param template The endpoint template.
+	 * @param failure The exception the caller received, or the one hidden by answering from the disk store.
+	 */
+	void recordFailure(String template, Throwable failure);
+}
@@ -0,0 +1,571 @@
+/*
+ * The Blue Alliance Java API - JsonTokenizer.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.IOException;
+import java.io.Reader;
+import org.json.simple.parser.ParseException;
+
+/**
+ * A pull tokenizer for JSON that reads values straight into primitives.
+ * 
+ * <p>Object keys are matched against a caller-supplied list of names instead of being
+ * turned into strings, numbers are accumulated into a <code>long</code>, and values the
+ * caller skips are never materialized.  Only the strings a caller asks for are allocated.
+ * Errors are reported as json-simple <code>ParseException</code>s.</p>
+ */
+final class JsonTokenizer {
+	
+	static final int BEGIN_OBJECT = 1;
+	static final int END_OBJECT = 2;
+	static final int BEGIN_ARRAY = 3;
+	static final int END_ARRAY = 4;
+	static final int NAME = 5;
+	static final int STRING = 6;
+	static final int NUMBER = 7;
+	static final int TRUE = 8;
+	static final int FALSE = 9;
+	static final int NULL = 10;
+	static final int END_DOCUMENT = 11;
+	
+	private static final int NONE = 0;
+	
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int NONEMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+	
+	private final Reader _reader;
+	private final KeyDictionary _dictionary;
+	private final char[] _buffer = new char[8192];
+	private int _pos;
+	private int _limit;
+	private long _consumed;
+	
+	private int[] _scopes = new int[16];
+	private int _depth = 1;
+	private int _peeked = NONE;
+	
+	private char[] _text = new char[64];
+	private int _textLength;
+	
+	JsonTokenizer(Reader reader) {
+		this(reader, null);
+	}
+	
+	JsonTokenizer(Reader reader, KeyDictionary dictionary) {
+		_reader = reader;
+		_dictionary = dictionary;
+		_scopes[0] = EMPTY_DOCUMENT;
+	}
+	
+	/**
+	 * Gets the type of the next token without consuming it.
+	 * 
+	 * @return The token type.
+	 */
+	int peek()
+		throws IOException, ParseException
+	{
+		if(_peeked == NONE) _peeked = doPeek();
+		
+		return _peeked;
+	}
+	
+	/**
+	 * Determines if the current object or array has another element.
+	 * 
+	 * @return <code>true</code> if another element follows; <code>false</code> otherwise.
+	 */
+	boolean hasNext()
+		throws IOException, ParseException
+	{
+		int p = peek();
+		
+		return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+	}
+	
+	void beginObject()
+		throws IOException, ParseException
+	{
+		expect(BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+	
+	void endObject()
+		throws IOException, ParseException
+	{
+		expect(END_OBJECT);
+		_depth--;
+	}
+	
+	void beginArray()
+		throws IOException, ParseException
+	{
+		expect(BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+	
+	void endArray()
+		throws IOException, ParseException
+	{
+		expect(END_ARRAY);
+		_depth--;
+	}
+	
+	/**
+	 * Consumes an object key and finds it in <code>names</code>.
+	 * 
+	 * @param names The keys the caller is interested in.
+	 * @return The index of the key in <code>names</code>, or <code>-1</code> if it is not there.
+	 */
+	int nextName(String[] names)
+		throws IOException, ParseException
+	{
+		expect(NAME);
+		readString();
+		
+		for(int i = 0; i < names.length; i++) {
+			if(textEquals(names[i])) return i;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Consumes a string or <code>null</code>.
+	 * 
+	 * @return The string, or <code>null</code>.
+	 */
+	String nextString()
+		throws IOException, ParseException
+	{
+		int p = peek();
+		
+		if(p == NULL) {
+			consumeKeyword("null");
+			return null;
+		}
+		
+		expect(STRING);
+		readString();
+		
+		return new String(_text, 0, _textLength);
+	}
+	
+	/**
+	 * Consumes a string or <code>null</code> that is likely to repeat, such as a team key,
+	 * taking it from the key dictionary if there is one.
+	 * 
+	 * @return The string, or <code>null</code>.
+	 */
+	String nextKey()
+		throws IOException, ParseException
+	{
+		if(_dictionary == null) return nextString();
+		
+		int p = peek();
+		
+		if(p == NULL) {
+			consumeKeyword("null");
+			return null;
+		}
+		
+		expect(STRING);
+		readString();
+		
+		return _dictionary.canonicalize(_text, 0, _textLength);
+	}
+	
+	/**
+	 * Consumes a number, truncating any fraction.  <code>null</code> reads as <code>0</code>.
+	 * 
+	 * @return The number.
+	 */
+	int nextInt()
+		throws IOException, ParseException
+	{
+		return (int)nextLong();
+	}
+	
+	/**
+	 * Consumes a number, truncating any fraction.  <code>null</code> reads as <code>0</code>.
+	 * 
+	 * @return The number.
+	 */
+	long nextLong()
+		throws IOException, ParseException
+	{
+		int p = peek();
+		
+		if(p == NULL) {
+			consumeKeyword("null");
+			return 0;
+		}
+		
+		expect(NUMBER);
+		
+		boolean negative = false;
+		boolean integral = true;
+		long value = 0;
+		_textLength = 0;
+		
+		for(;;) {
+			if(_pos == _limit && !fill()) break;
+			
+			char c = _buffer[_pos];
+			
+			if(c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+			} else if(c == '-' && _textLength == 0) {
+				negative = true;
+			} else if(c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+				integral = false;
+			} else {
+				break;
+			}
+			
+			appendText(c);
+			_pos++;
+		}
+		
+		if(_textLength == 0 || (negative && _textLength == 1)) throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+		
+		if(!integral) {
+			try {
+				return (long)Double.parseDouble(new String(_text, 0, _textLength));
+			} catch (NumberFormatException e) {
+				throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+			}
+		}
+		
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Consumes a boolean.  <code>null</code> reads as <code>false</code>.
+	 * 
+	 * @return The boolean.
+	 */
+	boolean nextBoolean()
+		throws IOException, ParseException
+	{
+		int p = peek();
+		
+		if(p == TRUE) {
+			consumeKeyword("true");
+			return true;
+		} else if(p == FALSE) {
+			consumeKeyword("false");
+			return false;
+		} else if(p == NULL) {
+			consumeKeyword("null");
+			return false;
+		}
+		
+		throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+	}
+	
+	/**
+	 * Consumes the next value, including everything nested inside it, without materializing it.
+	 */
+	void skipValue()
+		throws IOException, ParseException
+	{
+		int depth = 0;
+		
+		do {
+			int p = peek();
+			
+			switch(p) {
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case END_OBJECT:
+				endObject();
+				depth--;
+				break;
+			case END_ARRAY:
+				endArray();
+				depth--;
+				break;
+			case NAME:
+			case STRING:
+				_peeked = NONE;
+				skipString();
+				break;
+			case NUMBER:
+				nextLong();
+				break;
+			case TRUE:
+			case FALSE:
+			case NULL:
+				consumeKeyword(p == TRUE ? "true" : p == FALSE ? "false" : "null");
+				break;
+			default:
+				throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+			}
+		} while(depth > 0);
+	}
+	
+	/**
+	 * Gets the number of characters consumed so far.
+	 * 
+	 * @return The input position.
+	 */
+	long getPosition() {
+		return _consumed + _pos;
+	}
+	
+	private void expect(int token)
+		throws IOException, ParseException
+	{
+		if(peek() != token) throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+		
+		_peeked = NONE;
+	}
+	
+	private void push(int scope) {
+		if(_depth == _scopes.length) {
+			int[] grown = new int[_scopes.length * 2];
+			System.arraycopy(_scopes, 0, grown, 0, _scopes.length);
+			_scopes = grown;
+		}
+		
+		_scopes[_depth++] = scope;
+	}
+	
+	private int doPeek()
+		throws IOException, ParseException
+	{
+		int scope = _scopes[_depth - 1];
+		
+		if(scope == EMPTY_ARRAY || scope == NONEMPTY_ARRAY) {
+			_scopes[_depth - 1] = NONEMPTY_ARRAY;
+			int c = nextNonWhitespace();
+			
+			if(c == ']') {
+				_pos++;
+				return END_ARRAY;
+			}
+			
+			if(scope == NONEMPTY_ARRAY) {
+				if(c != ',') throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+				_pos++;
+			}
+		} else if(scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+			_scopes[_depth - 1] = DANGLING_NAME;
+			int c = nextNonWhitespace();
+			
+			if(c == '}') {
+				_pos++;
+				return END_OBJECT;
+			}
+			
+			if(scope == NONEMPTY_OBJECT) {
+				if(c != ',') throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+				_pos++;
+				c = nextNonWhitespace();
+			}
+			
+			if(c != '"') throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+			_pos++;
+			
+			return NAME;
+		} else if(scope == DANGLING_NAME) {
+			_scopes[_depth - 1] = NONEMPTY_OBJECT;
+			
+			if(nextNonWhitespace() != ':') throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+			_pos++;
+		} else if(scope == EMPTY_DOCUMENT) {
+			_scopes[_depth - 1] = NONEMPTY_DOCUMENT;
+		} else {
+			if(nextNonWhitespace() == -1) return END_DOCUMENT;
+			
+			throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+		}
+		
+		int c = nextNonWhitespace();
+		
+		switch(c) {
+		case '{':
+			_pos++;
+			return BEGIN_OBJECT;
+		case '[':
+			_pos++;
+			return BEGIN_ARRAY;
+		case '"':
+			_pos++;
+			return STRING;
+		case 't':
+			return TRUE;
+		case 'f':
+			return FALSE;
+		case 'n':
+			return NULL;
+		case -1:
+			throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+		default:
+			if(c == '-' || (c >= '0' && c <= '9')) return NUMBER;
+			
+			throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+		}
+	}
+	
+	private void consumeKeyword(String keyword)
+		throws IOException, ParseException
+	{
+		_peeked = NONE;
+		
+		for(int i = 0; i < keyword.length(); i++) {
+			if((_pos == _limit && !fill()) || _buffer[_pos] != keyword.charAt(i)) throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+			_pos++;
+		}
+	}
+	
+	private int nextNonWhitespace()
+		throws IOException
+	{
+		for(;;) {
+			if(_pos == _limit && !fill()) return -1;
+			
+			char c = _buffer[_pos];
+			
+			if(c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+			
+			_pos++;
+		}
+	}
+	
+	private boolean fill()
+		throws IOException
+	{
+		_consumed += _limit;
+		_pos = 0;
+		_limit = 0;
+		
+		int n = _reader.read(_buffer, 0, _buffer.length);
+		
+		if(n <= 0) return false;
+		
+		_limit = n;
+		return true;
+	}
+	
+	private void appendText(char c) {
+		if(_textLength == _text.length) {
+			char[] grown = new char[_text.length * 2];
+			System.arraycopy(_text, 0, grown, 0, _text.length);
+			_text = grown;
+		}
+		
+		_text[_textLength++] = c;
+	}
+	
+	private boolean textEquals(String s) {
+		if(s.length() != _textLength) return false;
+		
+		for(int i = 0; i < _textLength; i++) {
+			if(_text[i] != s.charAt(i)) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads the rest of a string whose opening quote has been consumed into <code>_text</code>.
+	 */
+	private void readString()
+		throws IOException, ParseException
+	{
+		_textLength = 0;
+		
+		for(;;) {
+			if(_pos == _limit && !fill()) throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+			
+			char c = _buffer[_pos++];
+			
+			if(c == '"') return;
+			
+			if(c == '\\') {
+				appendText(readEscape());
+			} else {
+				appendText(c);
+			}
+		}
+	}
+	
+	private void skipString()
+		throws IOException, ParseException
+	{
+		for(;;) {
+			if(_pos == _limit && !fill()) throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+			
+			char c = _buffer[_pos++];
+			
+			if(c == '"') return;
+			
+			if(c == '\\') readEscape();
+		}
+	}
+	
+	private char readEscape()
+		throws IOException, ParseException
+	{
+		if(_pos == _limit && !fill()) throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+		
+		char c = _buffer[_pos++];
+		
+		switch(c) {
+		case '"':
+		case '\\':
+		case '/':
+			return c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+			
+			for(int i = 0; i < 4; i++) {
+				if(_pos == _limit && !fill()) throw error(ParseException.ERROR_UNEXPECTED_TOKEN);
+				
+				int digit = Character.digit(_buffer[_pos++], 16);
+				
+				if(digit < 0) throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+				
+				value = (value << 4) | digit;
+			}
+			
+			return (char)value;
+		default:
+			throw error(ParseException.ERROR_UNEXPECTED_CHAR);
+		}
+	}
+	
+	private ParseException error(int type) {
+		return new ParseException((int)getPosition(), type, _pos < _limit ? Character.valueOf(_buffer[_pos]) : null);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * The Blue Alliance Java API - KeyDictionary.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canonicalizes the short strings that repeat across responses, such as team keys, event
+ * keys and competition levels, so every parsed model shares one instance of each.
+ * 
+ * <p>The dictionary is a fixed-size table: a string is looked up in two slots chosen by its
+ * hash, and when both hold other strings the first is replaced.  Memory use is therefore
+ * bounded no matter how many distinct keys pass through it, and a key that stops recurring is
+ * eventually evicted.  Strings longer than <code>MAX_LENGTH</code> are never kept.</p>
+ * 
+ * <p>When reading responses, a key already in the dictionary is returned without allocating a
+ * new string at all.  This class is thread-safe; concurrent updates of one slot may cost a
+ * duplicate, never a wrong string.</p>
+ */
+public final class KeyDictionary {
+	
+	/**
+	 * The default number of slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 16384;
+	
+	/**
+	 * The longest string the dictionary keeps.
+	 */
+	public static final int MAX_LENGTH = 32;
+	
+	// Strings are immutable and safely published, so slots need no synchronization.
+	private final String[] _slots;
+	private final int _mask;
+	
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _bytesSaved = new AtomicLong();
+	
+	/**
+	 * Creates an instance of KeyDictionary with the default capacity.
+	 */
+	public KeyDictionary() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an instance of KeyDictionary.
+	 * 
+	 * @param capacity The number of slots, rounded up to a power of two.
+	 */
+	public KeyDictionary(int capacity) {
+		if(capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("capacity");
+		
+		int size = Integer.highestOneBit(capacity);
+		
+		if(size < capacity) size <<= 1;
+		
+		_slots = new String[Math.max(2, size)];
+		_mask = _slots.length - 1;
+	}
+	
+	/**
+	 * Gets the canonical instance of a string.
+	 * 
+	 * @param s The string.
+	 * @return An equal string from the dictionary, or <code>s</code> itself.
+	 */
+	public String canonicalize(String s) {
+		if(s == null || s.length() > MAX_LENGTH) return s;
+		
+		int slot = slot(s.hashCode());
+		String found = _slots[slot];
+		
+		if(s.equals(found) || s.equals(found = _slots[slot ^ 1])) {
+			hit(found.length());
+			return found;
+		}
+		
+		store(slot, s);
+		
+		return s;
+	}
+	
+	/**
+	 * Gets the canonical string of a range of characters, allocating one only if it is not in the dictionary.
+	 */
+	String canonicalize(char[] chars, int offset, int length) {
+		if(length > MAX_LENGTH) return new String(chars, offset, length);
+		
+		int hash = 0;
+		
+		for(int i = 0; i < length; i++) {
+			hash = 31 * hash + chars[offset + i];
+		}
+		
+		int slot = slot(hash);
+		String found = _slots[slot];
+		
+		if(matches(found, chars, offset, length) || matches(found = _slots[slot ^ 1], chars, offset, length)) {
+			hit(length);
+			return found;
+		}
+		
+		String s = new String(chars, offset, length);
+		store(slot, s);
+		
+		return s;
+	}
+	
+	private int slot(int hash) {
+		hash ^= hash >>> 16;
+		
+		return hash & _mask;
+	}
+	
+	private static boolean matches(String s, char[] chars, int offset, int length) {
+		if(s == null || s.length() != length) return false;
+		
+		for(int i = 0; i < length; i++) {
+			if(s.charAt(i) != chars[offset + i]) return false;
+		}
+		
+		return true;
+	}
+	
+	private void hit(int length) {
+		_hits.incrementAndGet();
+		_bytesSaved.addAndGet(stringSize(length));
+	}
+	
+	private void store(int slot, String s) {
+		_misses.incrementAndGet();
+		
+		if(_slots[slot] != null && _slots[slot ^ 1] == null) slot ^= 1;
+		
+		_slots[slot] = s;
+	}
+	
+	/**
+	 * Estimates the heap size of a string: a 24 byte <code>String</code> and its backing array,
+	 * a 16 byte header plus one byte per Latin-1 character, padded to 8 bytes.
+	 */
+	private static long stringSize(int length) {
+		return 24 + ((16 + length + 7) & ~7);
+	}
+	
+	/**
+	 * Gets the number of lookups answered by a string already in the dictionary.
+	 * 
+	 * @return The number of hits.
+	 */
+	public long getHitCount() {
+		return _hits.get();
+	}
+	
+	/**
+	 * Gets the number of lookups that added a string to the dictionary.
+	 * 
+	 * @return The number of misses.
+	 */
+	public long getMissCount() {
+		return _misses.get();
+	}
+	
+	/**
+	 * Gets the estimated heap that hits saved, assuming each would otherwise have been a separate
+	 * retained string.  Strings are estimated as on a 64-bit JVM with compressed references and compact strings.
+	 * 
+	 * @return The estimated number of bytes saved.
+	 */
+	public long getBytesSaved() {
+		return _bytesSaved.get();
+	}
+	
+	/**
+	 * Gets the number of strings in the dictionary.
+	 * 
+	 * @return The number of strings.
+	 */
+	public int size() {
+		int size = 0;
+		
+		for(String s : _slots) {
+			if(s != null) size++;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Gets the number of slots.
+	 * 
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return _slots.length;
+	}
+	
+	/**
+	 * Removes every string.
+	 */
+	public void clear() {
+		for(int i = 0; i < _slots.length; i++) {
+			_slots[i] = null;
+		}
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * The Blue Alliance Java API - MatchIndex.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Matches.Match;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Indexes matches by team, by event and by competition level, so lookups do not scan
+ * every match.
+ * 
+ * <p>Each match gets a row.  A team's matches are kept as a list of rows keyed by team
+ * number.  An event's rows are kept in play order (competition level, set, match),
+ * so an event, one of its competition levels or one set is a contiguous range found by
+ * binary search.  Adding a match with the key of one already indexed replaces it, so
+ * refreshed match lists can be added again as scores arrive.</p>
+ * 
+ * <p>A client given an index with <code>BLUEClient.Builder.matchIndex</code> adds every
+ * result of <code>Event.getMatches</code> to it, along with the changes an
+ * <code>EventWatcher</code> finds.  This class is thread-safe.</p>
+ */
+public final class MatchIndex {
+	
+	/**
+	 * A growable list of rows.
+	 */
+	private static final class Postings {
+		int[] _rows = new int[8];
+		int _size;
+		
+		void add(int row) {
+			insert(_size, row);
+		}
+		
+		void insert(int index, int row) {
+			if(_size == _rows.length) _rows = Arrays.copyOf(_rows, _size * 2);
+			
+			System.arraycopy(_rows, index, _rows, index + 1, _size - index);
+			_rows[index] = row;
+			_size++;
+		}
+		
+		void remove(int row) {
+			for(int i = 0; i < _size; i++) {
+				if(_rows[i] == row) {
+					System.arraycopy(_rows, i + 1, _rows, i, _size - i - 1);
+					_size--;
+					return;
+				}
+			}
+		}
+	}
+	
+	private static final Comparator<Match> PLAY_ORDER = new Comparator<Match>() {
+		public int compare(Match a, Match b) {
+			int levelA = MatchTable.compLevelCode(a._compLevel);
+			int levelB = MatchTable.compLevelCode(b._compLevel);
+			
+			if(levelA != levelB) return levelA < levelB ? -1 : 1;
+			if(a._setNumber != b._setNumber) return a._setNumber < b._setNumber ? -1 : 1;
+			
+			return a._matchNumber < b._matchNumber ? -1 : a._matchNumber == b._matchNumber ? 0 : 1;
+		}
+	};
+	
+	private Match[] _matches = new Match[64];
+	private int[] _level = new int[64];
+	private int _size;
+	
+	private final HashMap<String, Integer> _rowByKey = new HashMap<String, Integer>();
+	private final HashMap<String, Postings> _byEvent = new HashMap<String, Postings>();
+	private final Postings[] _byLevel = new Postings[MatchTable.OTHER + 1];
+	private final HashMap<Integer, Postings> _byTeam = new HashMap<Integer, Postings>();
+	
+	/**
+	 * Creates an empty index.
+	 */
+	public MatchIndex() {
+		for(int i = 0; i < _byLevel.length; i++) {
+			_byLevel[i] = new Postings();
+		}
+	}
+	
+	/**
+	 * Adds a match, replacing any indexed match with the same key.
+	 * 
+	 * @param match The match.
+	 */
+	public synchronized void add(Match match) {
+		Integer existing = match._key == null ? null : _rowByKey.get(match._key);
+		
+		if(existing == null) {
+			if(_size == _matches.length) {
+				_matches = Arrays.copyOf(_matches, _size * 2);
+				_level = Arrays.copyOf(_level, _size * 2);
+			}
+			
+			int row = _size++;
+			
+			if(match._key != null) _rowByKey.put(match._key, row);
+			
+			insert(row, match);
+			return;
+		}
+		
+		int row = existing;
+		Match old = _matches[row];
+		
+		// A new score leaves every posting where it is; anything else is re-indexed.
+		if(samePostings(old, match)) {
+			_matches[row] = match;
+			return;
+		}
+		
+		remove(row, old);
+		insert(row, match);
+	}
+	
+	/**
+	 * Adds matches, replacing any indexed matches with the same keys.
+	 * 
+	 * @param matches The matches.
+	 */
+	public synchronized void addAll(Match[] matches) {
+		for(Match match : matches) {
+			add(match);
+		}
+	}
+	
+	private void insert(int row, Match match) {
+		_matches[row] = match;
+		_level[row] = MatchTable.compLevelCode(match._compLevel);
+		_byLevel[_level[row]].add(row);
+		
+		Postings event = _byEvent.get(match._eventKey);
+		
+		if(event == null) {
+			event = new Postings();
+			_byEvent.put(match._eventKey, event);
+		}
+		
+		event.insert(upperBound(event, _level[row], match._setNumber, match._matchNumber), row);
+		
+		for(int team : match._teamNumbers) {
+			if(team <= 0) continue;
+			
+			Postings postings = _byTeam.get(team);
+			
+			if(postings == null) {
+				postings = new Postings();
+				_byTeam.put(team, postings);
+			}
+			
+			postings.add(row);
+		}
+	}
+	
+	private void remove(int row, Match match) {
+		_byLevel[_level[row]].remove(row);
+		_byEvent.get(match._eventKey).remove(row);
+		
+		for(int team : match._teamNumbers) {
+			if(team > 0) _byTeam.get(team).remove(row);
+		}
+	}
+	
+	private static boolean samePostings(Match a, Match b) {
+		return equal(a._eventKey, b._eventKey) && equal(a._compLevel, b._compLevel) && a._setNumber == b._setNumber
+				&& a._matchNumber == b._matchNumber && a._redCount == b._redCount && Arrays.equals(a._teamNumbers, b._teamNumbers);
+	}
+	
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+	
+	/**
+	 * Compares a row's play order with (<code>level</code>, <code>setNumber</code>, <code>matchNumber</code>).
+	 */
+	private int compare(int row, int level, int setNumber, int matchNumber) {
+		Match match = _matches[row];
+		
+		if(_level[row] != level) return _level[row] < level ? -1 : 1;
+		if(match._setNumber != setNumber) return match._setNumber < setNumber ? -1 : 1;
+		if(match._matchNumber != matchNumber) return match._matchNumber < matchNumber ? -1 : 1;
+		
+		return 0;
+	}
+	
+	/**
+	 * Finds the first position in an event whose row sorts after the given play order.
+	 */
+	private int upperBound(Postings event, int level, int setNumber, int matchNumber) {
+		int low = 0;
+		int high = event._size;
+		
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			
+			if(compare(event._rows[mid], level, setNumber, matchNumber) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Finds the first position in an event whose row does not sort before the given play order.
+	 */
+	private int lowerBound(Postings event, int level, int setNumber, int matchNumber) {
+		int low = 0;
+		int high = event._size;
+		
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			
+			if(compare(event._rows[mid], level, setNumber, matchNumber) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		return low;
+	}
+	
+	private Match[] collect(int[] rows, int from, int to) {
+		Match[] matches = new Match[to - from];
+		
+		for(int i = from; i < to; i++) {
+			matches[i - from] = _matches[rows[i]];
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * Gets the number of indexed matches.
+	 * 
+	 * @return The number of matches.
+	 */
+	public synchronized int size() {
+		return _size;
+	}
+	
+	/**
+	 * Gets a match by key.
+	 * 
+	 * @param matchKey The match key, such as <code>2014sac_qm1</code>.
+	 * @return The match, or <code>null</code> if it is not indexed.
+	 */
+	public synchronized Match getMatch(String matchKey) {
+		Integer row = _rowByKey.get(matchKey);
+		
+		return row == null ? null : _matches[row];
+	}
+	
+	/**
+	 * Gets the matches a team played in, in the order they were added.
+	 * 
+	 * @param teamNumber The team number.
+	 * @return The team's matches.
+	 */
+	public synchronized Match[] getMatchesForTeam(int teamNumber) {
+		Postings team = _byTeam.get(teamNumber);
+		
+		return team == null ? new Match[0] : collect(team._rows, 0, team._size);
+	}
+	
+	/**
+	 * Gets the matches a team played in at an event, in play order.
+	 * 
+	 * @param teamNumber The team number.
+	 * @param eventKey The event key.
+	 * @return The team's matches at the event.
+	 */
+	public synchronized Match[] getMatchesForTeam(int teamNumber, String eventKey) {
+		Postings event = _byEvent.get(eventKey);
+		Postings team = _byTeam.get(teamNumber);
+		
+		if(event == null || team == null) return new Match[0];
+		
+		// The team's postings are usually far shorter than the event's, so filter those and sort the few survivors.
+		int[] rows = new int[team._size];
+		int count = 0;
+		
+		for(int i = 0; i < team._size; i++) {
+			if(eventKey.equals(_matches[team._rows[i]]._eventKey)) rows[count++] = team._rows[i];
+		}
+		
+		Match[] matches = collect(rows, 0, count);
+		Arrays.sort(matches, PLAY_ORDER);
+		
+		return matches;
+	}
+	
+	/**
+	 * Gets the number of matches a team played in.
+	 * 
+	 * @param teamNumber The team number.
+	 * @return The number of matches.
+	 */
+	public synchronized int getMatchCountForTeam(int teamNumber) {
+		Postings team = _byTeam.get(teamNumber);
+		
+		return team == null ? 0 : team._size;
+	}
+	
+	/**
+	 * Gets the matches of an event, in play order.
+	 * 
+	 * @param eventKey The event key.
+	 * @return The event's matches.
+	 */
+	public synchronized Match[] getMatchesForEvent(String eventKey) {
+		Postings event = _byEvent.get(eventKey);
+		
+		return event == null ? new Match[0] : collect(event._rows, 0, event._size);
+	}
+	
+	/**
+	 * Gets the matches of one competition level of an event, in play order.
+	 * 
+	 * @param eventKey The event key.
+	 * @param compLevel The competition level, such as <code>"qf"</code>.
+	 * @return The matches.
+	 */
+	public synchronized Match[] getMatchesForEvent(String eventKey, String compLevel) {
+		Postings event = _byEvent.get(eventKey);
+		
+		if(event == null) return new Match[0];
+		
+		int level = MatchTable.compLevelCode(compLevel);
+		
+		return collect(event._rows, lowerBound(event, level, Integer.MIN_VALUE, Integer.MIN_VALUE), upperBound(event, level, Integer.MAX_VALUE, Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Gets the matches of one set of an event, such as the second quarterfinal, in play order.
+	 * 
+	 * @param eventKey The event key.
+	 * @param compLevel The competition level, such as <code>"qf"</code>.
+	 * @param setNumber The set number.
+	 * @return The matches.
+	 */
+	public synchronized Match[] getSet(String eventKey, String compLevel, int setNumber) {
+		Postings event = _byEvent.get(eventKey);
+		
+		if(event == null) return new Match[0];
+		
+		int level = MatchTable.compLevelCode(compLevel);
+		
+		return collect(event._rows, lowerBound(event, level, setNumber, Integer.MIN_VALUE), upperBound(event, level, setNumber, Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Gets every match of a competition level, in the order they were added.
+	 * 
+	 * @param compLevel The competition level, such as <code>"f"</code>.
+	 * @return The matches.
+	 */
+	public synchronized Match[] getMatchesForCompLevel(String compLevel) {
+		Postings level = _byLevel[MatchTable.compLevelCode(compLevel)];
+		
+		return collect(level._rows, 0, level._size);
+	}
+	
+	/**
+	 * Removes every match.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(_matches, 0, _size, null);
+		_size = 0;
+		_rowByKey.clear();
+		_byEvent.clear();
+		_byTeam.clear();
+		
+		for(int i = 0; i < _byLevel.length; i++) {
+			_byLevel[i] = new Postings();
+		}
+	}
+}
@@ -0,0 +1,689 @@
+/*
+ * The Blue Alliance Java API - MatchTable.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A column store of matches for analytics.
+ * 
+ * <p>Each match is a row; competition levels, set and match numbers, scores and event indexes
+ * are kept in parallel <code>int</code> arrays, and the teams of every alliance are kept as team
+ * numbers in a single flat array.  Scans and aggregations read these arrays in order and do not
+ * allocate per match.</p>
+ * 
+ * <p>A team whose key has no number, such as the second robot <code>"frc254B"</code>, is kept as
+ * team <code>0</code>.  It still fills its alliance slot, but it is left out of per-team results
+ * rather than merged into another team's.</p>
+ * 
+ * <p>A <code>MatchTable</code> is not synchronized.  Rows can be appended at any time; existing
+ * rows never move.</p>
+ */
+public final class MatchTable {
+	
+	/** The code for qualification matches. */
+	public static final int QM = 0;
+	/** The code for eighth-final matches. */
+	public static final int EF = 1;
+	/** The code for quarter-final matches. */
+	public static final int QF = 2;
+	/** The code for semi-final matches. */
+	public static final int SF = 3;
+	/** The code for final matches. */
+	public static final int F = 4;
+	/** The code for any other competition level. */
+	public static final int OTHER = 5;
+	
+	/** The largest team number read from a team key; a key with a larger number is treated as having none. */
+	public static final int MAX_TEAM_NUMBER = 99999;
+	
+	private static final String[] COMP_LEVELS = { "qm", "ef", "qf", "sf", "f" };
+	
+	/**
+	 * Visits rows of a table.
+	 */
+	public static interface RowVisitor {
+		/**
+		 * Visits a row.
+		 * 
+		 * @param table The table.
+		 * @param row The row index.
+		 */
+		void visit(MatchTable table, int row);
+	}
+	
+	/**
+	 * Per-team totals, in ascending team number order.  Unplayed matches, those with a negative
+	 * score, count toward <code>getMatches</code> only.
+	 */
+	public static final class TeamTotals {
+		private final int[] _teams;
+		private final int[] _matches;
+		private final int[] _wins;
+		private final int[] _losses;
+		private final int[] _ties;
+		private final long[] _pointsFor;
+		private final long[] _pointsAgainst;
+		
+		TeamTotals(int count) {
+			_teams = new int[count];
+			_matches = new int[count];
+			_wins = new int[count];
+			_losses = new int[count];
+			_ties = new int[count];
+			_pointsFor = new long[count];
+			_pointsAgainst = new long[count];
+		}
+		
+		/**
+		 * Gets the number of teams.
+		 * 
+		 * @return The number of teams.
+		 */
+		public int size() {
+			return _teams.length;
+		}
+		
+		/**
+		 * Finds the index of a team.
+		 * 
+		 * @param teamNumber The team number.
+		 * @return The team's index, or a negative number if the team played no matches.
+		 */
+		public int indexOf(int teamNumber) {
+			return Arrays.binarySearch(_teams, teamNumber);
+		}
+		
+		/**
+		 * Gets the team number at <code>index</code>.
+		 * 
+		 * @param index The team index.
+		 * @return The team number.
+		 */
+		public int getTeamNumber(int index) {
+			return _teams[index];
+		}
+		
+		/**
+		 * Gets the number of matches a team was scheduled in.
+		 * 
+		 * @param index The team index.
+		 * @return The number of matches.
+		 */
+		public int getMatches(int index) {
+			return _matches[index];
+		}
+		
+		/**
+		 * Gets the number of matches a team won.
+		 * 
+		 * @param index The team index.
+		 * @return The number of wins.
+		 */
+		public int getWins(int index) {
+			return _wins[index];
+		}
+		
+		/**
+		 * Gets the number of matches a team lost.
+		 * 
+		 * @param index The team index.
+		 * @return The number of losses.
+		 */
+		public int getLosses(int index) {
+			return _losses[index];
+		}
+		
+		/**
+		 * Gets the number of matches a team tied.
+		 * 
+		 * @param index The team index.
+		 * @return The number of ties.
+		 */
+		public int getTies(int index) {
+			return _ties[index];
+		}
+		
+		/**
+		 * Gets the total score of a team's alliances.
+		 * 
+		 * @param index The team index.
+		 * @return The points scored.
+		 */
+		public long getPointsFor(int index) {
+			return _pointsFor[index];
+		}
+		
+		/**
+		 * Gets the total score of a team's opponents.
+		 * 
+		 * @param index The team index.
+		 * @return The points conceded.
+		 */
+		public long getPointsAgainst(int index) {
+			return _pointsAgainst[index];
+		}
+		
+		/**
+		 * Gets the fraction of played matches a team won, counting ties as half a win.
+		 * 
+		 * @param index The team index.
+		 * @return The win rate, or <code>0</code> if the team has played no matches.
+		 */
+		public double getWinRate(int index) {
+			int played = _wins[index] + _losses[index] + _ties[index];
+			
+			return played == 0 ? 0 : (_wins[index] + _ties[index] * 0.5) / played;
+		}
+		
+		/**
+		 * Gets the average score of a team's alliances.
+		 * 
+		 * @param index The team index.
+		 * @return The average score, or <code>0</code> if the team has played no matches.
+		 */
+		public double getAverageScore(int index) {
+			int played = _wins[index] + _losses[index] + _ties[index];
+			
+			return played == 0 ? 0 : (double)_pointsFor[index] / played;
+		}
+	}
+	
+	private int _size;
+	private int[] _compLevel;
+	private int[] _setNumber;
+	private int[] _matchNumber;
+	private int[] _event;
+	private int[] _redScore;
+	private int[] _blueScore;
+	private int[] _redCount;
+	private int[] _teamStart;
+	private int[] _teams;
+	private int _teamCount;
+	private int _maxTeam;
+	
+	private String[] _eventKeys = new String[4];
+	private int _eventCount;
+	private final HashMap<String, Integer> _eventIndex = new HashMap<String, Integer>();
+	
+	/**
+	 * Creates an empty table.
+	 */
+	public MatchTable() {
+		this(64);
+	}
+	
+	/**
+	 * Creates an empty table with room for <code>capacity</code> matches.
+	 * 
+	 * @param capacity The initial capacity, in matches.
+	 */
+	public MatchTable(int capacity) {
+		if(capacity < 0) throw new IllegalArgumentException("capacity");
+		
+		_compLevel = new int[capacity];
+		_setNumber = new int[capacity];
+		_matchNumber = new int[capacity];
+		_event = new int[capacity];
+		_redScore = new int[capacity];
+		_blueScore = new int[capacity];
+		_redCount = new int[capacity];
+		_teamStart = new int[capacity + 1];
+		_teams = new int[capacity * 6];
+	}
+	
+	/**
+	 * Creates a table of <code>matches</code>.
+	 * 
+	 * @param matches The matches.
+	 * @return A new table.
+	 */
+	public static MatchTable of(Matches.Match[] matches) {
+		MatchTable table = new MatchTable(matches.length);
+		table.addAll(matches);
+		return table;
+	}
+	
+	/**
+	 * Appends a match.
+	 * 
+	 * @param match The match.
+	 * @return The match's row index.
+	 */
+	public int add(Matches.Match match) {
+		int[] teams = match._teamNumbers;
+		
+		if(_size == _compLevel.length) grow(_size + 1);
+		if(_teamCount + teams.length > _teams.length) _teams = Arrays.copyOf(_teams, Math.max(_teams.length * 2, _teamCount + teams.length));
+		
+		int row = _size;
+		
+		_compLevel[row] = compLevelCode(match._compLevel);
+		_setNumber[row] = match._setNumber;
+		_matchNumber[row] = match._matchNumber;
+		_event[row] = eventIndex(match._eventKey);
+		_redScore[row] = match._redAllianceScore;
+		_blueScore[row] = match._blueAllianceScore;
+		_redCount[row] = match._redCount;
+		
+		for(int team : teams) {
+			addTeam(team);
+		}
+		
+		_teamStart[row + 1] = _teamCount;
+		_size++;
+		
+		return row;
+	}
+	
+	/**
+	 * Appends matches.
+	 * 
+	 * @param matches The matches.
+	 */
+	public void addAll(Matches.Match[] matches) {
+		if(_size + matches.length > _compLevel.length) grow(_size + matches.length);
+		
+		for(Matches.Match match : matches) {
+			add(match);
+		}
+	}
+	
+	private void addTeam(int team) {
+		_teams[_teamCount++] = team;
+		
+		if(team > _maxTeam) _maxTeam = team;
+	}
+	
+	private void grow(int minCapacity) {
+		int capacity = Math.max(_compLevel.length * 2, minCapacity);
+		
+		_compLevel = Arrays.copyOf(_compLevel, capacity);
+		_setNumber = Arrays.copyOf(_setNumber, capacity);
+		_matchNumber = Arrays.copyOf(_matchNumber, capacity);
+		_event = Arrays.copyOf(_event, capacity);
+		_redScore = Arrays.copyOf(_redScore, capacity);
+		_blueScore = Arrays.copyOf(_blueScore, capacity);
+		_redCount = Arrays.copyOf(_redCount, capacity);
+		_teamStart = Arrays.copyOf(_teamStart, capacity + 1);
+	}
+	
+	private int eventIndex(String eventKey) {
+		Integer index = _eventIndex.get(eventKey);
+		
+		if(index == null) {
+			index = _eventCount;
+			
+			if(_eventCount == _eventKeys.length) _eventKeys = Arrays.copyOf(_eventKeys, _eventCount * 2);
+			
+			_eventKeys[_eventCount++] = eventKey;
+			_eventIndex.put(eventKey, index);
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Gets the code for a competition level.
+	 * 
+	 * @param compLevel The competition level, such as <code>"qm"</code>.
+	 * @return One of <code>QM</code>, <code>EF</code>, <code>QF</code>, <code>SF</code>, <code>F</code> or <code>OTHER</code>.
+	 */
+	public static int compLevelCode(String compLevel) {
+		for(int i = 0; i < COMP_LEVELS.length; i++) {
+			if(COMP_LEVELS[i].equals(compLevel)) return i;
+		}
+		
+		return OTHER;
+	}
+	
+	/**
+	 * Parses the number from a team key such as <code>"frc254"</code>, without allocating.  A key
+	 * with anything after the number, such as <code>"frc254B"</code>, has no number of its own.
+	 * 
+	 * @param teamKey The team key.
+	 * @return The team number, or <code>0</code> if the key has none or it is larger than <code>MAX_TEAM_NUMBER</code>.
+	 */
+	public static int teamNumber(String teamKey) {
+		if(teamKey == null) return 0;
+		
+		int i = 0;
+		int length = teamKey.length();
+		
+		while(i < length && (teamKey.charAt(i) < '0' || teamKey.charAt(i) > '9')) {
+			i++;
+		}
+		
+		int number = 0;
+		
+		while(i < length && teamKey.charAt(i) >= '0' && teamKey.charAt(i) <= '9') {
+			number = number * 10 + (teamKey.charAt(i++) - '0');
+			
+			// Team numbers index arrays, so a bogus key must not produce a huge or overflowed one.
+			if(number > MAX_TEAM_NUMBER) return 0;
+		}
+		
+		return i == length ? number : 0;
+	}
+	
+	/**
+	 * Gets the number of matches.
+	 * 
+	 * @return The number of rows.
+	 */
+	public int size() {
+		return _size;
+	}
+	
+	/**
+	 * Gets the competition level code of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The competition level code.
+	 */
+	public int getCompLevel(int row) {
+		check(row);
+		return _compLevel[row];
+	}
+	
+	/**
+	 * Gets the set number of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The set number.
+	 */
+	public int getSetNumber(int row) {
+		check(row);
+		return _setNumber[row];
+	}
+	
+	/**
+	 * Gets the match number of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The match number.
+	 */
+	public int getMatchNumber(int row) {
+		check(row);
+		return _matchNumber[row];
+	}
+	
+	/**
+	 * Gets the event key of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The event key.
+	 */
+	public String getEventKey(int row) {
+		check(row);
+		return _eventKeys[_event[row]];
+	}
+	
+	/**
+	 * Gets the red alliance score of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The red alliance score, or a negative number if the match has not been played.
+	 */
+	public int getRedScore(int row) {
+		check(row);
+		return _redScore[row];
+	}
+	
+	/**
+	 * Gets the blue alliance score of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The blue alliance score, or a negative number if the match has not been played.
+	 */
+	public int getBlueScore(int row) {
+		check(row);
+		return _blueScore[row];
+	}
+	
+	/**
+	 * Gets the number of teams on the red alliance of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The red alliance size.
+	 */
+	public int getRedTeamCount(int row) {
+		check(row);
+		return _redCount[row];
+	}
+	
+	/**
+	 * Gets the number of teams on the blue alliance of a match.
+	 * 
+	 * @param row The row index.
+	 * @return The blue alliance size.
+	 */
+	public int getBlueTeamCount(int row) {
+		check(row);
+		return _teamStart[row + 1] - _teamStart[row] - _redCount[row];
+	}
+	
+	/**
+	 * Gets a team on the red alliance of a match.
+	 * 
+	 * @param row The row index.
+	 * @param index The position in the alliance.
+	 * @return The team number.
+	 */
+	public int getRedTeam(int row, int index) {
+		if(index < 0 || index >= getRedTeamCount(row)) throw new IndexOutOfBoundsException("index");
+		
+		return _teams[_teamStart[row] + index];
+	}
+	
+	/**
+	 * Gets a team on the blue alliance of a match.
+	 * 
+	 * @param row The row index.
+	 * @param index The position in the alliance.
+	 * @return The team number.
+	 */
+	public int getBlueTeam(int row, int index) {
+		if(index < 0 || index >= getBlueTeamCount(row)) throw new IndexOutOfBoundsException("index");
+		
+		return _teams[_teamStart[row] + _redCount[row] + index];
+	}
+	
+	/**
+	 * Determines which alliance a team played on in a match.
+	 * 
+	 * @param row The row index.
+	 * @param teamNumber The team number.
+	 * @return <code>1</code> for red, <code>-1</code> for blue, or <code>0</code> if the team did not play.
+	 */
+	public int allianceOf(int row, int teamNumber) {
+		check(row);
+		
+		if(teamNumber <= 0) return 0;
+		
+		int start = _teamStart[row];
+		int end = _teamStart[row + 1];
+		int blue = start + _redCount[row];
+		
+		for(int i = start; i < end; i++) {
+			if(_teams[i] == teamNumber) return i < blue ? 1 : -1;
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Determines if a match has been played.
+	 * 
+	 * @param row The row index.
+	 * @return <code>true</code> if both scores are known; <code>false</code> otherwise.
+	 */
+	public boolean isPlayed(int row) {
+		check(row);
+		return _redScore[row] >= 0 && _blueScore[row] >= 0;
+	}
+	
+	/**
+	 * Visits every row in order.
+	 * 
+	 * @param visitor The visitor.
+	 */
+	public void forEach(RowVisitor visitor) {
+		for(int row = 0; row < _size; row++) {
+			visitor.visit(this, row);
+		}
+	}
+	
+	/**
+	 * Visits every row a team played in, in order.
+	 * 
+	 * @param teamNumber The team number.
+	 * @param visitor The visitor.
+	 */
+	public void forEachWithTeam(int teamNumber, RowVisitor visitor) {
+		if(teamNumber <= 0) return;
+		
+		for(int row = 0; row < _size; row++) {
+			for(int i = _teamStart[row], end = _teamStart[row + 1]; i < end; i++) {
+				if(_teams[i] == teamNumber) {
+					visitor.visit(this, row);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the distinct team numbers in this table, without team <code>0</code>.
+	 * 
+	 * @return The team numbers, in ascending order.
+	 */
+	public int[] getTeamNumbers() {
+		boolean[] seen = new boolean[_maxTeam + 1];
+		int count = 0;
+		
+		for(int i = 0; i < _teamCount; i++) {
+			if(!seen[_teams[i]]) {
+				seen[_teams[i]] = true;
+				count++;
+			}
+		}
+		
+		if(seen[0]) count--;
+		
+		int[] teams = new int[count];
+		
+		for(int team = 1, n = 0; n < count; team++) {
+			if(seen[team]) teams[n++] = team;
+		}
+		
+		return teams;
+	}
+	
+	/**
+	 * Gets the total of both alliance scores over all played matches.
+	 * 
+	 * @return The total score.
+	 */
+	public long getTotalScore() {
+		long total = 0;
+		
+		for(int row = 0; row < _size; row++) {
+			if(_redScore[row] >= 0 && _blueScore[row] >= 0) total += _redScore[row] + _blueScore[row];
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Gets the highest alliance score over all matches.
+	 * 
+	 * @return The highest score, or <code>-1</code> if no match has been played.
+	 */
+	public int getHighScore() {
+		int high = -1;
+		
+		for(int row = 0; row < _size; row++) {
+			if(_redScore[row] > high) high = _redScore[row];
+			if(_blueScore[row] > high) high = _blueScore[row];
+		}
+		
+		return high;
+	}
+	
+	/**
+	 * Computes per-team totals over all matches.  Team <code>0</code> has no totals.
+	 * 
+	 * @return The totals.
+	 */
+	public TeamTotals totals() {
+		return totals(-1);
+	}
+	
+	/**
+	 * Computes per-team totals over the matches of one competition level.
+	 * 
+	 * @param compLevel The competition level code, or <code>-1</code> for all levels.
+	 * @return The totals.
+	 */
+	public TeamTotals totals(int compLevel) {
+		int[] teams = getTeamNumbers();
+		int[] slot = new int[_maxTeam + 1];
+		
+		for(int i = 0; i < teams.length; i++) {
+			slot[teams[i]] = i;
+		}
+		
+		TeamTotals totals = new TeamTotals(teams.length);
+		System.arraycopy(teams, 0, totals._teams, 0, teams.length);
+		
+		for(int row = 0; row < _size; row++) {
+			if(compLevel >= 0 && _compLevel[row] != compLevel) continue;
+			
+			int red = _redScore[row];
+			int blue = _blueScore[row];
+			boolean played = red >= 0 && blue >= 0;
+			int start = _teamStart[row];
+			int end = _teamStart[row + 1];
+			int blueStart = start + _redCount[row];
+			
+			for(int i = start; i < end; i++) {
+				if(_teams[i] == 0) continue;
+				
+				int s = slot[_teams[i]];
+				int own = i < blueStart ? red : blue;
+				int other = i < blueStart ? blue : red;
+				
+				totals._matches[s]++;
+				
+				if(!played) continue;
+				
+				totals._pointsFor[s] += own;
+				totals._pointsAgainst[s] += other;
+				
+				if(own > other) {
+					totals._wins[s]++;
+				} else if(own < other) {
+					totals._losses[s]++;
+				} else {
+					totals._ties[s]++;
+				}
+			}
+		}
+		
+		return totals;
+	}
+	
+	private void check(int row) {
+		if(row < 0 || row >= _size) throw new IndexOutOfBoundsException("row");
+	}
+}
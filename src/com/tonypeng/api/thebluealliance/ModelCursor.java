@@ -0,0 +1,158 @@
+/*
+ * The Blue Alliance Java API - ModelCursor.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import com.tonypeng.api.thebluealliance.BLUE.UncheckedBLUEApiException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Iterates over the elements of a JSON array response, reading each one only when asked.
+ * 
+ * <p>The response is closed as soon as the array has been read to the end, when reading
+ * fails, or when the cursor is closed early.  Only one element is held at a time.</p>
+ * 
+ * <p>A short-circuiting stream operation, such as <code>findFirst()</code>, stops reading without
+ * telling the cursor.  If such a cursor is dropped without being closed, its response is closed once
+ * the garbage collector finds it unreachable, so it cannot hold its connection forever.</p>
+ */
+final class ModelCursor<T> implements Iterator<T>, Closeable {
+	private static final ReferenceQueue<ModelCursor<?>> ABANDONED = new ReferenceQueue<ModelCursor<?>>();
+	private static final Set<Releaser> OPEN = Collections.newSetFromMap(new ConcurrentHashMap<Releaser, Boolean>());
+	
+	static {
+		Thread reaper = new Thread(new Runnable() {
+			public void run() {
+				while(true) {
+					try {
+						((Releaser)ABANDONED.remove()).release();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "BLUEClient-stream-reaper");
+		
+		reaper.setDaemon(true);
+		reaper.start();
+	}
+	
+	/**
+	 * Closes the response of a cursor that became unreachable while still open.
+	 */
+	private static final class Releaser extends PhantomReference<ModelCursor<?>> {
+		private final Transport.Response _response;
+		
+		Releaser(ModelCursor<?> cursor, Transport.Response response) {
+			super(cursor, ABANDONED);
+			_response = response;
+			OPEN.add(this);
+		}
+		
+		void release() {
+			if(!OPEN.remove(this)) return;
+			
+			try {
+				_response.close();
+			} catch (IOException e) {
+				// Nothing useful can be done here.
+			}
+		}
+	}
+	
+	private final BLUEClient _client;
+	private final String _template;
+	private final Transport.Response _response;
+	private final CountingInputStream _is;
+	private final JsonTokenizer _in;
+	private final ModelReader.ItemReader<T> _itemReader;
+	private final long _start;
+	private final Releaser _releaser;
+	private boolean _closed;
+	
+	ModelCursor(BLUEClient client, String template, Transport.Response response, ModelReader.ItemReader<T> itemReader)
+		throws IOException, ParseException
+	{
+		_client = client;
+		_template = template;
+		_response = response;
+		_itemReader = itemReader;
+		_start = System.nanoTime();
+		_is = new CountingInputStream(response.getBody());
+		_in = new JsonTokenizer(BLUEClient.openReader(_is), client.getKeyDictionary());
+		_in.beginArray();
+		_releaser = new Releaser(this, response);
+	}
+	
+	public synchronized boolean hasNext() {
+		if(_closed) return false;
+		
+		try {
+			if(_in.hasNext()) return true;
+			
+			_in.endArray();
+		} catch (IOException e) {
+			throw fail(new BLUEApiException("Error reading the response.", e));
+		} catch (ParseException e) {
+			throw fail(new BLUEApiException("Malformed response received.", e));
+		}
+		
+		close();
+		
+		return false;
+	}
+	
+	public synchronized T next() {
+		if(!hasNext()) throw new NoSuchElementException();
+		
+		try {
+			return _itemReader.read(_client, _in);
+		} catch (IOException e) {
+			throw fail(new BLUEApiException("Error reading the response.", e));
+		} catch (ParseException e) {
+			throw fail(new BLUEApiException("Malformed response received.", e));
+		}
+	}
+	
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	public synchronized void close() {
+		if(_closed) return;
+		
+		_closed = true;
+		OPEN.remove(_releaser);
+		_releaser.clear();
+		// Elements are mapped as they are parsed, and the time between them belongs to the consumer, so only reading is timed.
+		_client.recordResponse(_template, _is, System.nanoTime() - _start, false);
+		
+		try {
+			_response.close();
+		} catch (IOException e) {
+			// Nothing useful can be done here.
+		}
+	}
+	
+	private UncheckedBLUEApiException fail(BLUEApiException e) {
+		close();
+		
+		return new UncheckedBLUEApiException(e);
+	}
+}
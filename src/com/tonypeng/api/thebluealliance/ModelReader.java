@@ -0,0 +1,313 @@
+/*
+ * The Blue Alliance Java API - ModelReader.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Events;
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import com.tonypeng.api.thebluealliance.BLUE.Teams;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Reads <code>Team</code>, <code>Event</code> and <code>Match</code> objects straight from a
+ * JSON token stream.
+ * 
+ * <p>Instead of building a <code>JSONObject</code> tree of boxed values and copying fields
+ * out of it, each field is read from the <code>JsonTokenizer</code> into the primitive or
+ * string the model stores.  Fields the models do not use are skipped without being stored.</p>
+ */
+final class ModelReader {
+	
+	/**
+	 * Reads one model object from the tokenizer.
+	 */
+	static interface ItemReader<T> {
+		T read(BLUEClient client, JsonTokenizer in) throws IOException, ParseException;
+	}
+	
+	/**
+	 * Reads a <code>/team/{key}</code> response.
+	 */
+	static final BLUEClient.BodyParser<Teams.Team> TEAM = new BLUEClient.BodyParser<Teams.Team>() {
+		public Teams.Team parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			return readTeam(client, new JsonTokenizer(reader, client.getKeyDictionary()));
+		}
+	};
+	
+	/**
+	 * Reads an <code>/event/{key}/teams</code> response.
+	 */
+	static final BLUEClient.BodyParser<Teams.Team[]> TEAMS = new BLUEClient.BodyParser<Teams.Team[]>() {
+		public Teams.Team[] parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			List<Teams.Team> teams = readArray(client, new JsonTokenizer(reader, client.getKeyDictionary()), TEAM_READER);
+			return teams.toArray(new Teams.Team[teams.size()]);
+		}
+	};
+	
+	/**
+	 * Reads an <code>/event/{key}</code> response.
+	 */
+	static final BLUEClient.BodyParser<Events.Event> EVENT = new BLUEClient.BodyParser<Events.Event>() {
+		public Events.Event parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			return readEvent(client, new JsonTokenizer(reader, client.getKeyDictionary()));
+		}
+	};
+	
+	/**
+	 * Reads an <code>/events/{year}</code> response.
+	 */
+	static final BLUEClient.BodyParser<Events.Event[]> EVENTS = new BLUEClient.BodyParser<Events.Event[]>() {
+		public Events.Event[] parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			List<Events.Event> events = readArray(client, new JsonTokenizer(reader, client.getKeyDictionary()), EVENT_READER);
+			return events.toArray(new Events.Event[events.size()]);
+		}
+	};
+	
+	/**
+	 * Reads the <code>events</code> of a <code>/team/{key}/{year}</code> response.
+	 */
+	static final BLUEClient.BodyParser<Events.Event[]> TEAM_EVENTS = new BLUEClient.BodyParser<Events.Event[]>() {
+		public Events.Event[] parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			JsonTokenizer in = new JsonTokenizer(reader, client.getKeyDictionary());
+			List<Events.Event> events = new ArrayList<Events.Event>();
+			
+			in.beginObject();
+			
+			while(in.hasNext()) {
+				if(in.nextName(EVENTS_FIELD) == 0 && in.peek() == JsonTokenizer.BEGIN_ARRAY) {
+					events = readArray(client, in, EVENT_READER);
+				} else {
+					in.skipValue();
+				}
+			}
+			
+			in.endObject();
+			
+			return events.toArray(new Events.Event[events.size()]);
+		}
+	};
+	
+	/**
+	 * Reads an <code>/event/{key}/matches</code> response.
+	 */
+	static final BLUEClient.BodyParser<Matches.Match[]> MATCHES = new BLUEClient.BodyParser<Matches.Match[]>() {
+		public Matches.Match[] parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+			List<Matches.Match> matches = readArray(client, new JsonTokenizer(reader, client.getKeyDictionary()), MATCH_READER);
+			return matches.toArray(new Matches.Match[matches.size()]);
+		}
+	};
+	
+	static final ItemReader<Teams.Team> TEAM_READER = new ItemReader<Teams.Team>() {
+		public Teams.Team read(BLUEClient client, JsonTokenizer in) throws IOException, ParseException {
+			return readTeam(client, in);
+		}
+	};
+	
+	static final ItemReader<Events.Event> EVENT_READER = new ItemReader<Events.Event>() {
+		public Events.Event read(BLUEClient client, JsonTokenizer in) throws IOException, ParseException {
+			return readEvent(client, in);
+		}
+	};
+	
+	static final ItemReader<Matches.Match> MATCH_READER = new ItemReader<Matches.Match>() {
+		public Matches.Match read(BLUEClient client, JsonTokenizer in) throws IOException, ParseException {
+			return readMatch(client, in);
+		}
+	};
+	
+	private static final String[] EVENTS_FIELD = { "events" };
+	
+	private static final String[] TEAM_FIELDS = { "website", "name", "locality", "region", "country_name",
+		"location", "team_number", "key", "nickname" };
+	
+	private static final String[] EVENT_FIELDS = { "key", "name", "short_name", "event_code", "event_type_string",
+		"event_type", "year", "location", "official" };
+	
+	private static final String[] MATCH_FIELDS = { "key", "comp_level", "set_number", "match_number", "event_key", "alliances" };
+	
+	private static final String[] ALLIANCE_COLORS = { "red", "blue" };
+	
+	private static final String[] ALLIANCE_FIELDS = { "score", "teams" };
+	
+	private static final String[] NO_TEAMS = new String[0];
+	
+	private ModelReader() {
+	}
+	
+	static <T> List<T> readArray(BLUEClient client, JsonTokenizer in, ItemReader<T> itemReader)
+		throws IOException, ParseException
+	{
+		List<T> items = new ArrayList<T>();
+		
+		in.beginArray();
+		
+		while(in.hasNext()) {
+			items.add(itemReader.read(client, in));
+		}
+		
+		in.endArray();
+		
+		return items;
+	}
+	
+	static Teams.Team readTeam(BLUEClient client, JsonTokenizer in)
+		throws IOException, ParseException
+	{
+		String website = null, name = null, locality = null, region = null, country = null, location = null, key = null, nickName = null;
+		int teamNumber = 0;
+		
+		in.beginObject();
+		
+		while(in.hasNext()) {
+			switch(in.nextName(TEAM_FIELDS)) {
+			case 0: website = in.nextString(); break;
+			case 1: name = in.nextString(); break;
+			case 2: locality = in.nextString(); break;
+			case 3: region = in.nextString(); break;
+			case 4: country = in.nextString(); break;
+			case 5: location = in.nextString(); break;
+			case 6: teamNumber = in.nextInt(); break;
+			case 7: key = in.nextKey(); break;
+			case 8: nickName = in.nextString(); break;
+			default: in.skipValue(); break;
+			}
+		}
+		
+		in.endObject();
+		
+		return new Teams.Team(client, website, name, locality, region, country, location, teamNumber, key, nickName);
+	}
+	
+	static Events.Event readEvent(BLUEClient client, JsonTokenizer in)
+		throws IOException, ParseException
+	{
+		String key = null, name = null, shortName = null, eventCode = null, eventType = null, location = null;
+		int eventTypeCode = 0, year = 0;
+		boolean official = false;
+		
+		in.beginObject();
+		
+		while(in.hasNext()) {
+			switch(in.nextName(EVENT_FIELDS)) {
+			case 0: key = in.nextKey(); break;
+			case 1: name = in.nextString(); break;
+			case 2: shortName = in.nextString(); break;
+			case 3: eventCode = in.nextString(); break;
+			case 4: eventType = in.nextKey(); break;
+			case 5: eventTypeCode = in.nextInt(); break;
+			case 6: year = in.nextInt(); break;
+			case 7: location = in.nextString(); break;
+			case 8: official = in.nextBoolean(); break;
+			default: in.skipValue(); break;
+			}
+		}
+		
+		in.endObject();
+		
+		return new Events.Event(client, key, name, shortName, eventCode, eventType, eventTypeCode, year, location, official);
+	}
+	
+	static Matches.Match readMatch(BLUEClient client, JsonTokenizer in)
+		throws IOException, ParseException
+	{
+		String key = null, compLevel = null, eventKey = null;
+		int setNumber = 0, matchNumber = 0, redScore = 0, blueScore = 0;
+		String[] redTeams = NO_TEAMS, blueTeams = NO_TEAMS;
+		
+		in.beginObject();
+		
+		while(in.hasNext()) {
+			switch(in.nextName(MATCH_FIELDS)) {
+			case 0: key = in.nextString(); break;
+			case 1: compLevel = in.nextKey(); break;
+			case 2: setNumber = in.nextInt(); break;
+			case 3: matchNumber = in.nextInt(); break;
+			case 4: eventKey = in.nextKey(); break;
+			case 5:
+				in.beginObject();
+				
+				while(in.hasNext()) {
+					int color = in.nextName(ALLIANCE_COLORS);
+					
+					if(color < 0) {
+						in.skipValue();
+						continue;
+					}
+					
+					in.beginObject();
+					
+					while(in.hasNext()) {
+						switch(in.nextName(ALLIANCE_FIELDS)) {
+						case 0:
+							if(color == 0) {
+								redScore = in.nextInt();
+							} else {
+								blueScore = in.nextInt();
+							}
+							break;
+						case 1:
+							if(color == 0) {
+								redTeams = readTeamKeys(in);
+							} else {
+								blueTeams = readTeamKeys(in);
+							}
+							break;
+						default:
+							in.skipValue();
+							break;
+						}
+					}
+					
+					in.endObject();
+				}
+				
+				in.endObject();
+				break;
+			default: in.skipValue(); break;
+			}
+		}
+		
+		in.endObject();
+		
+		return new Matches.Match(key, compLevel, setNumber, matchNumber, eventKey, redTeams, redScore, blueTeams, blueScore);
+	}
+	
+	private static String[] readTeamKeys(JsonTokenizer in)
+		throws IOException, ParseException
+	{
+		String[] teams = new String[3];
+		int count = 0;
+		
+		in.beginArray();
+		
+		while(in.hasNext()) {
+			if(count == teams.length) {
+				String[] grown = new String[teams.length * 2];
+				System.arraycopy(teams, 0, grown, 0, count);
+				teams = grown;
+			}
+			
+			teams[count++] = in.nextKey();
+		}
+		
+		in.endArray();
+		
+		if(count != teams.length) {
+			String[] exact = new String[count];
+			System.arraycopy(teams, 0, exact, 0, count);
+			teams = exact;
+		}
+		
+		return teams;
+	}
+}
@@ -0,0 +1,558 @@
+/*
+ * The Blue Alliance Java API - PowerRatings.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import java.util.Arrays;
+
+/**
+ * Computes offensive power rating (OPR), defensive power rating (DPR) and calculated
+ * contribution to winning margin (CCWM) from match results.
+ * 
+ * <p>Each alliance in a played match contributes one equation: the sum of its teams' ratings
+ * equals its score (OPR) or its opponent's score (DPR).  The least-squares solution comes from
+ * the normal equations <code>A^T A x = A^T b</code>.  <code>A^T A</code>, which counts how often each
+ * pair of teams shared an alliance, is kept up to date as matches are added, so adding a match
+ * costs a few array updates and solving again costs only the solve.  Because CCWM's right-hand
+ * side is the difference of the other two, CCWM is OPR minus DPR.</p>
+ * 
+ * <p>Up to <code>DENSE_LIMIT</code> teams, such as a single event, the system is solved by
+ * Cholesky factorization.  Larger systems, such as a whole season, are solved by
+ * diagonally preconditioned conjugate gradient directly on the match list, starting from the previous solution.  A small ridge term
+ * keeps the system solvable when some teams' ratings are not fully determined.</p>
+ * 
+ * <p>Team <code>0</code>, which stands for a team key without a number, gets no rating; the
+ * alliance's score is shared by its other teams.</p>
+ * 
+ * <p>A <code>PowerRatings</code> is not synchronized.</p>
+ */
+public final class PowerRatings {
+	
+	/**
+	 * The largest number of teams for which the normal matrix is kept and solved densely.
+	 */
+	public static final int DENSE_LIMIT = 400;
+	
+	private static final double RIDGE = 1e-6;
+	private static final double TOLERANCE = 1e-10;
+	
+	/**
+	 * Selects how the system is solved.
+	 */
+	public static enum Solver {
+		/** Cholesky up to <code>DENSE_LIMIT</code> teams, conjugate gradient beyond. */
+		AUTO,
+		/** Dense Cholesky factorization. */
+		CHOLESKY,
+		/** Conjugate gradient on the sparse system. */
+		CONJUGATE_GRADIENT
+	}
+	
+	/**
+	 * Ratings for every team, in ascending team number order.
+	 */
+	public static final class Result {
+		private final int[] _teams;
+		private final double[] _opr;
+		private final double[] _dpr;
+		private final int _matches;
+		
+		Result(int[] teams, double[] opr, double[] dpr, int matches) {
+			_teams = teams;
+			_opr = opr;
+			_dpr = dpr;
+			_matches = matches;
+		}
+		
+		/**
+		 * Gets the number of teams.
+		 * 
+		 * @return The number of teams.
+		 */
+		public int size() {
+			return _teams.length;
+		}
+		
+		/**
+		 * Gets the number of played matches the ratings are based on.
+		 * 
+		 * @return The number of matches.
+		 */
+		public int getMatchCount() {
+			return _matches;
+		}
+		
+		/**
+		 * Finds the index of a team.
+		 * 
+		 * @param teamNumber The team number.
+		 * @return The team's index, or a negative number if the team has no rating.
+		 */
+		public int indexOf(int teamNumber) {
+			return Arrays.binarySearch(_teams, teamNumber);
+		}
+		
+		/**
+		 * Gets the team number at <code>index</code>.
+		 * 
+		 * @param index The team index.
+		 * @return The team number.
+		 */
+		public int getTeamNumber(int index) {
+			return _teams[index];
+		}
+		
+		/**
+		 * Gets a team's offensive power rating.
+		 * 
+		 * @param index The team index.
+		 * @return The OPR.
+		 */
+		public double getOpr(int index) {
+			return _opr[index];
+		}
+		
+		/**
+		 * Gets a team's defensive power rating.
+		 * 
+		 * @param index The team index.
+		 * @return The DPR.
+		 */
+		public double getDpr(int index) {
+			return _dpr[index];
+		}
+		
+		/**
+		 * Gets a team's calculated contribution to winning margin.
+		 * 
+		 * @param index The team index.
+		 * @return The CCWM.
+		 */
+		public double getCcwm(int index) {
+			return _opr[index] - _dpr[index];
+		}
+	}
+	
+	// Teams are numbered by slot in order of first appearance.
+	private int[] _slotOf = new int[1024];
+	private int[] _teamNumbers = new int[64];
+	private int _teamCount;
+	
+	// Alliances, as team slots, with their score and their opponent's score.
+	private int[] _allianceStart = new int[129];
+	private int[] _allianceTeams = new int[384];
+	private int[] _allianceScore = new int[128];
+	private int[] _opponentScore = new int[128];
+	private int _allianceCount;
+	private int _matchCount;
+	
+	// The right-hand sides A^T b for OPR and DPR.
+	private double[] _scoreSum = new double[64];
+	private double[] _opponentSum = new double[64];
+	
+	// A^T A, row-major with stride _denseStride, while there are at most DENSE_LIMIT teams.
+	private int[] _normal = new int[64 * 64];
+	private int _denseStride = 64;
+	
+	// The last conjugate gradient solution, used as the next starting point.
+	private double[] _lastOpr = new double[0];
+	private double[] _lastDpr = new double[0];
+	
+	/**
+	 * Adds a match.  Matches that have not been played, with a negative score, are ignored.
+	 * 
+	 * @param match The match.
+	 */
+	public void addMatch(Matches.Match match) {
+		int[] teams = match._teamNumbers;
+		
+		add(teams, 0, match._redCount, match._redAllianceScore, teams, match._redCount, teams.length - match._redCount, match._blueAllianceScore);
+	}
+	
+	/**
+	 * Adds matches.
+	 * 
+	 * @param matches The matches.
+	 */
+	public void addMatches(Matches.Match[] matches) {
+		for(Matches.Match match : matches) {
+			addMatch(match);
+		}
+	}
+	
+	/**
+	 * Adds every match in a table.
+	 * 
+	 * @param table The table.
+	 */
+	public void addMatches(MatchTable table) {
+		int[] red = new int[4];
+		int[] blue = new int[4];
+		
+		for(int row = 0; row < table.size(); row++) {
+			int redCount = table.getRedTeamCount(row);
+			int blueCount = table.getBlueTeamCount(row);
+			
+			if(redCount > red.length) red = new int[redCount];
+			if(blueCount > blue.length) blue = new int[blueCount];
+			
+			for(int i = 0; i < redCount; i++) {
+				red[i] = table.getRedTeam(row, i);
+			}
+			
+			for(int i = 0; i < blueCount; i++) {
+				blue[i] = table.getBlueTeam(row, i);
+			}
+			
+			add(red, 0, redCount, table.getRedScore(row), blue, 0, blueCount, table.getBlueScore(row));
+		}
+	}
+	
+	/**
+	 * Adds a match.  Matches that have not been played, with a negative score, are ignored.
+	 * 
+	 * @param redTeams The red alliance's team numbers.
+	 * @param redScore The red alliance's score.
+	 * @param blueTeams The blue alliance's team numbers.
+	 * @param blueScore The blue alliance's score.
+	 */
+	public void addMatch(int[] redTeams, int redScore, int[] blueTeams, int blueScore) {
+		add(redTeams, 0, redTeams.length, redScore, blueTeams, 0, blueTeams.length, blueScore);
+	}
+	
+	private void add(int[] red, int redStart, int redCount, int redScore, int[] blue, int blueStart, int blueCount, int blueScore) {
+		if(redScore < 0 || blueScore < 0) return;
+		
+		addAlliance(red, redStart, redCount, redScore, blueScore);
+		addAlliance(blue, blueStart, blueCount, blueScore, redScore);
+		_matchCount++;
+	}
+	
+	private void addAlliance(int[] teams, int offset, int count, int score, int opponentScore) {
+		if(_allianceCount == _allianceScore.length) {
+			int capacity = _allianceCount * 2;
+			_allianceScore = Arrays.copyOf(_allianceScore, capacity);
+			_opponentScore = Arrays.copyOf(_opponentScore, capacity);
+			_allianceStart = Arrays.copyOf(_allianceStart, capacity + 1);
+		}
+		
+		int start = _allianceStart[_allianceCount];
+		
+		if(start + count > _allianceTeams.length) _allianceTeams = Arrays.copyOf(_allianceTeams, Math.max(_allianceTeams.length * 2, start + count));
+		
+		int n = 0;
+		
+		for(int i = 0; i < count; i++) {
+			if(teams[offset + i] == 0) continue;
+			
+			int slot = slot(teams[offset + i]);
+			
+			_allianceTeams[start + n++] = slot;
+			_scoreSum[slot] += score;
+			_opponentSum[slot] += opponentScore;
+		}
+		
+		count = n;
+		
+		if(_normal != null) {
+			for(int i = 0; i < count; i++) {
+				int row = _allianceTeams[start + i] * _denseStride;
+				
+				for(int j = 0; j < count; j++) {
+					_normal[row + _allianceTeams[start + j]]++;
+				}
+			}
+		}
+		
+		_allianceScore[_allianceCount] = score;
+		_opponentScore[_allianceCount] = opponentScore;
+		_allianceStart[++_allianceCount] = start + count;
+	}
+	
+	private int slot(int teamNumber) {
+		if(teamNumber < 0) throw new IllegalArgumentException("teamNumber");
+		
+		if(teamNumber >= _slotOf.length) _slotOf = Arrays.copyOf(_slotOf, Math.max(_slotOf.length * 2, teamNumber + 1));
+		
+		int slot = _slotOf[teamNumber] - 1;
+		
+		if(slot >= 0) return slot;
+		
+		slot = _teamCount++;
+		_slotOf[teamNumber] = slot + 1;
+		
+		if(slot == _teamNumbers.length) {
+			_teamNumbers = Arrays.copyOf(_teamNumbers, slot * 2);
+			_scoreSum = Arrays.copyOf(_scoreSum, slot * 2);
+			_opponentSum = Arrays.copyOf(_opponentSum, slot * 2);
+		}
+		
+		_teamNumbers[slot] = teamNumber;
+		
+		if(_normal != null && _teamCount > _denseStride) {
+			if(_teamCount > DENSE_LIMIT) {
+				_normal = null;
+			} else {
+				int stride = Math.min(_denseStride * 2, DENSE_LIMIT);
+				int[] normal = new int[stride * stride];
+				
+				for(int i = 0; i < _denseStride; i++) {
+					System.arraycopy(_normal, i * _denseStride, normal, i * stride, _denseStride);
+				}
+				
+				_normal = normal;
+				_denseStride = stride;
+			}
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Gets the number of teams that have played.
+	 * 
+	 * @return The number of teams.
+	 */
+	public int getTeamCount() {
+		return _teamCount;
+	}
+	
+	/**
+	 * Gets the number of played matches added.
+	 * 
+	 * @return The number of matches.
+	 */
+	public int getMatchCount() {
+		return _matchCount;
+	}
+	
+	/**
+	 * Solves for every team's ratings.
+	 * 
+	 * @return The ratings.
+	 */
+	public Result solve() {
+		return solve(Solver.AUTO);
+	}
+	
+	/**
+	 * Solves for every team's ratings with a particular solver.
+	 * 
+	 * @param solver The solver.
+	 * @return The ratings.
+	 */
+	public Result solve(Solver solver) {
+		int n = _teamCount;
+		double[] opr = Arrays.copyOf(_scoreSum, n);
+		double[] dpr = Arrays.copyOf(_opponentSum, n);
+		
+		if(solver == Solver.CHOLESKY || (solver == Solver.AUTO && n <= DENSE_LIMIT)) {
+			double[] l = factor(n);
+			substitute(l, n, opr);
+			substitute(l, n, dpr);
+		} else {
+			opr = conjugateGradient(opr, Arrays.copyOf(_lastOpr, n));
+			dpr = conjugateGradient(dpr, Arrays.copyOf(_lastDpr, n));
+			_lastOpr = opr;
+			_lastDpr = dpr;
+		}
+		
+		// Order the result by team number.
+		long[] order = new long[n];
+		
+		for(int i = 0; i < n; i++) {
+			order[i] = ((long)_teamNumbers[i] << 32) | i;
+		}
+		
+		Arrays.sort(order);
+		
+		int[] teams = new int[n];
+		double[] sortedOpr = new double[n];
+		double[] sortedDpr = new double[n];
+		
+		for(int i = 0; i < n; i++) {
+			int slot = (int)order[i];
+			teams[i] = (int)(order[i] >>> 32);
+			sortedOpr[i] = opr[slot];
+			sortedDpr[i] = dpr[slot];
+		}
+		
+		return new Result(teams, sortedOpr, sortedDpr, _matchCount);
+	}
+	
+	/**
+	 * Builds <code>A^T A + ridge</code> and factors it into <code>L L^T</code>, returning <code>L</code> row-major.
+	 */
+	private double[] factor(int n) {
+		double[] l = new double[n * n];
+		
+		if(_normal != null) {
+			for(int i = 0; i < n; i++) {
+				for(int j = 0; j <= i; j++) {
+					l[i * n + j] = _normal[i * _denseStride + j];
+				}
+			}
+		} else {
+			for(int a = 0; a < _allianceCount; a++) {
+				for(int p = _allianceStart[a]; p < _allianceStart[a + 1]; p++) {
+					for(int q = _allianceStart[a]; q < _allianceStart[a + 1]; q++) {
+						if(_allianceTeams[q] <= _allianceTeams[p]) l[_allianceTeams[p] * n + _allianceTeams[q]]++;
+					}
+				}
+			}
+		}
+		
+		for(int j = 0; j < n; j++) {
+			int rowJ = j * n;
+			double d = l[rowJ + j] + RIDGE;
+			
+			for(int k = 0; k < j; k++) {
+				d -= l[rowJ + k] * l[rowJ + k];
+			}
+			
+			d = Math.sqrt(d);
+			l[rowJ + j] = d;
+			
+			for(int i = j + 1; i < n; i++) {
+				int rowI = i * n;
+				double s = l[rowI + j];
+				
+				for(int k = 0; k < j; k++) {
+					s -= l[rowI + k] * l[rowJ + k];
+				}
+				
+				l[rowI + j] = s / d;
+			}
+		}
+		
+		return l;
+	}
+	
+	/**
+	 * Solves <code>L L^T x = b</code> in place.
+	 */
+	private static void substitute(double[] l, int n, double[] b) {
+		for(int i = 0; i < n; i++) {
+			double s = b[i];
+			
+			for(int k = 0; k < i; k++) {
+				s -= l[i * n + k] * b[k];
+			}
+			
+			b[i] = s / l[i * n + i];
+		}
+		
+		for(int i = n - 1; i >= 0; i--) {
+			double s = b[i];
+			
+			for(int k = i + 1; k < n; k++) {
+				s -= l[k * n + i] * b[k];
+			}
+			
+			b[i] = s / l[i * n + i];
+		}
+	}
+	
+	/**
+	 * Solves <code>(A^T A + ridge) x = b</code> by conjugate gradient, preconditioned by the
+	 * diagonal, starting from <code>x</code>.
+	 */
+	private double[] conjugateGradient(double[] b, double[] x) {
+		int n = b.length;
+		double[] inverseDiagonal = new double[n];
+		double[] r = new double[n];
+		double[] z = new double[n];
+		double[] p = new double[n];
+		double[] q = new double[n];
+		
+		for(int a = 0; a < _allianceCount; a++) {
+			for(int i = _allianceStart[a]; i < _allianceStart[a + 1]; i++) {
+				for(int j = _allianceStart[a]; j < _allianceStart[a + 1]; j++) {
+					if(_allianceTeams[i] == _allianceTeams[j]) inverseDiagonal[_allianceTeams[i]]++;
+				}
+			}
+		}
+		
+		for(int i = 0; i < n; i++) {
+			inverseDiagonal[i] = 1 / (inverseDiagonal[i] + RIDGE);
+		}
+		
+		multiply(x, r);
+		
+		double bNorm = 0;
+		double rr = 0;
+		double rz = 0;
+		
+		for(int i = 0; i < n; i++) {
+			r[i] = b[i] - r[i];
+			z[i] = r[i] * inverseDiagonal[i];
+			p[i] = z[i];
+			rr += r[i] * r[i];
+			rz += r[i] * z[i];
+			bNorm += b[i] * b[i];
+		}
+		
+		double limit = TOLERANCE * TOLERANCE * bNorm;
+		
+		for(int iteration = 0; iteration < 10 * n && rr > limit; iteration++) {
+			multiply(p, q);
+			
+			double pq = 0;
+			
+			for(int i = 0; i < n; i++) {
+				pq += p[i] * q[i];
+			}
+			
+			double alpha = rz / pq;
+			double nextRz = 0;
+			rr = 0;
+			
+			for(int i = 0; i < n; i++) {
+				x[i] += alpha * p[i];
+				r[i] -= alpha * q[i];
+				z[i] = r[i] * inverseDiagonal[i];
+				rr += r[i] * r[i];
+				nextRz += r[i] * z[i];
+			}
+			
+			double beta = nextRz / rz;
+			rz = nextRz;
+			
+			for(int i = 0; i < n; i++) {
+				p[i] = z[i] + beta * p[i];
+			}
+		}
+		
+		return x;
+	}
+	
+	/**
+	 * Computes <code>out = (A^T A + ridge) x</code> from the alliance list, without forming <code>A^T A</code>.
+	 */
+	private void multiply(double[] x, double[] out) {
+		for(int i = 0; i < out.length; i++) {
+			out[i] = RIDGE * x[i];
+		}
+		
+		for(int a = 0; a < _allianceCount; a++) {
+			int start = _allianceStart[a];
+			int end = _allianceStart[a + 1];
+			double sum = 0;
+			
+			for(int p = start; p < end; p++) {
+				sum += x[_allianceTeams[p]];
+			}
+			
+			for(int p = start; p < end; p++) {
+				out[_allianceTeams[p]] += sum;
+			}
+		}
+	}
+}
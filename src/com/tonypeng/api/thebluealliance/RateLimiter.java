@@ -0,0 +1,339 @@
+/*
+ * The Blue Alliance Java API - RateLimiter.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the requests a client sends, both in rate and in concurrency.
+ * 
+ * <p>The rate is limited by a token bucket: requests are sent at most <code>requestsPerSecond</code>
+ * on average, with bursts of up to <code>burst</code>.  The number of requests in flight is limited
+ * by an additive-increase/multiplicative-decrease (AIMD) controller: every successful response
+ * raises the limit by about one per round of requests, and a <code>429</code>, a <code>5xx</code>,
+ * a failed request or a response much slower than the fastest seen recently cuts it by
+ * <code>BACKOFF_RATIO</code>.  A <code>429</code> with a <code>Retry-After</code> header also holds
+ * back every request until that time.</p>
+ * 
+ * <p>A request holds its concurrency slot until its response is closed.  A limiter may be shared
+ * by several clients to limit them together.  The transport's own limits, such as
+ * <code>HttpTransport</code>'s connections per host, still apply.</p>
+ */
+public class RateLimiter {
+	
+	/**
+	 * The factor the concurrency limit is multiplied by when the server shows signs of overload.
+	 */
+	public static final double BACKOFF_RATIO = 0.7;
+	
+	/**
+	 * How many times slower than the recent fastest response a response must be to count as a
+	 * sign of overload.
+	 */
+	public static final double LATENCY_TOLERANCE = 2.5;
+	
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	
+	private final double _requestsPerSecond;
+	private final int _burst;
+	private final int _minConcurrency;
+	private final int _maxConcurrency;
+	
+	private double _tokens;
+	private long _refilledAt = System.nanoTime();
+	private long _pausedUntil;
+	
+	private double _limit;
+	private int _inFlight;
+	private int _sent;
+	private long _baselineNanos = Long.MAX_VALUE;
+	private long _lastDecrease;
+	
+	private long _requests;
+	private long _throttled;
+	private long _serverErrors;
+	private long _decreases;
+	private long _waitNanos;
+	
+	/**
+	 * Creates an instance of RateLimiter.
+	 * 
+	 * @param requestsPerSecond The average request rate, or <code>Double.POSITIVE_INFINITY</code> for no rate limit.
+	 * @param burst The number of requests that may be sent at once after a quiet period.
+	 * @param minConcurrency The lowest the concurrency limit may fall to.
+	 * @param maxConcurrency The highest the concurrency limit may rise to.
+	 */
+	public RateLimiter(double requestsPerSecond, int burst, int minConcurrency, int maxConcurrency) {
+		if(!(requestsPerSecond > 0)) throw new IllegalArgumentException("requestsPerSecond");
+		if(burst <= 0) throw new IllegalArgumentException("burst");
+		if(minConcurrency <= 0 || maxConcurrency < minConcurrency) throw new IllegalArgumentException("concurrency");
+		
+		_requestsPerSecond = requestsPerSecond;
+		_burst = burst;
+		_minConcurrency = minConcurrency;
+		_maxConcurrency = maxConcurrency;
+		_tokens = burst;
+		_limit = minConcurrency;
+	}
+	
+	/**
+	 * Gets the average request rate.
+	 * 
+	 * @return The requests per second.
+	 */
+	public double getRequestsPerSecond() {
+		return _requestsPerSecond;
+	}
+	
+	/**
+	 * Gets the burst size.
+	 * 
+	 * @return The burst size.
+	 */
+	public int getBurst() {
+		return _burst;
+	}
+	
+	/**
+	 * Gets the current concurrency limit.
+	 * 
+	 * @return The number of requests allowed in flight.
+	 */
+	public synchronized int getConcurrencyLimit() {
+		return (int)_limit;
+	}
+	
+	/**
+	 * Gets the number of requests in flight.
+	 * 
+	 * @return The number of requests in flight.
+	 */
+	public synchronized int getInFlight() {
+		return _inFlight;
+	}
+	
+	/**
+	 * Gets the number of requests sent.
+	 * 
+	 * @return The number of requests.
+	 */
+	public synchronized long getRequestCount() {
+		return _requests;
+	}
+	
+	/**
+	 * Gets the number of <code>429</code> responses received.
+	 * 
+	 * @return The number of throttled responses.
+	 */
+	public synchronized long getThrottledCount() {
+		return _throttled;
+	}
+	
+	/**
+	 * Gets the number of <code>5xx</code> responses received.
+	 * 
+	 * @return The number of server errors.
+	 */
+	public synchronized long getServerErrorCount() {
+		return _serverErrors;
+	}
+	
+	/**
+	 * Gets the number of times the concurrency limit was cut.
+	 * 
+	 * @return The number of decreases.
+	 */
+	public synchronized long getDecreaseCount() {
+		return _decreases;
+	}
+	
+	/**
+	 * Gets the total time requests spent waiting for the limiter.
+	 * 
+	 * @return The wait time, in nanoseconds.
+	 */
+	public synchronized long getWaitNanos() {
+		return _waitNanos;
+	}
+	
+	/**
+	 * Waits until a request may be sent, and takes a concurrency slot for it.
+	 */
+	void acquire()
+		throws InterruptedException
+	{
+		long start = System.nanoTime();
+		
+		synchronized(this) {
+			while(_inFlight >= (int)_limit) {
+				wait();
+			}
+			
+			_inFlight++;
+			_requests++;
+		}
+		
+		try {
+			long delay;
+			
+			while((delay = takeToken()) > 0) {
+				Thread.sleep(delay / 1000000, (int)(delay % 1000000));
+			}
+		} catch (InterruptedException e) {
+			synchronized(this) {
+				_inFlight--;
+				notifyAll();
+			}
+			
+			throw e;
+		}
+		
+		synchronized(this) {
+			_sent++;
+			_waitNanos += System.nanoTime() - start;
+		}
+	}
+	
+	/**
+	 * Takes a token if one is available.
+	 * 
+	 * @return <code>0</code> if a token was taken, otherwise how long to wait, in nanoseconds.
+	 */
+	private synchronized long takeToken() {
+		long now = System.nanoTime();
+		
+		if(_pausedUntil - now > 0) return _pausedUntil - now;
+		
+		if(_requestsPerSecond == Double.POSITIVE_INFINITY) return 0;
+		
+		_tokens = Math.min(_burst, _tokens + (now - _refilledAt) * _requestsPerSecond / 1e9);
+		_refilledAt = now;
+		
+		if(_tokens >= 1) {
+			_tokens--;
+			return 0;
+		}
+		
+		return Math.max(1, (long)((1 - _tokens) * 1e9 / _requestsPerSecond));
+	}
+	
+	/**
+	 * Records a response and adjusts the concurrency limit.
+	 * 
+	 * @param status The HTTP status.
+	 * @param retryAfter The <code>Retry-After</code> header, or <code>null</code>.
+	 * @param latencyNanos The time until the response headers arrived.
+	 */
+	synchronized void onResponse(int status, String retryAfter, long latencyNanos) {
+		if(status == HTTP_TOO_MANY_REQUESTS) {
+			_throttled++;
+			pause(retryAfter);
+			decrease();
+			return;
+		}
+		
+		if(status >= 500) {
+			_serverErrors++;
+			decrease();
+			return;
+		}
+		
+		if(latencyNanos < _baselineNanos) {
+			_baselineNanos = latencyNanos;
+		} else {
+			// Let the baseline drift up slowly, so a lasting change in latency is eventually accepted.
+			_baselineNanos += (latencyNanos - _baselineNanos) / 256;
+		}
+		
+		if(latencyNanos > _baselineNanos * LATENCY_TOLERANCE) {
+			decrease();
+			return;
+		}
+		
+		// Only grow while the limit is actually in use, not while requests wait on the rate limit.
+		if(_sent >= (int)_limit) _limit = Math.min(_maxConcurrency, _limit + 1 / _limit);
+		
+		notifyAll();
+	}
+	
+	/**
+	 * Records a request that failed without a response.
+	 */
+	synchronized void onFailure() {
+		decrease();
+	}
+	
+	private void decrease() {
+		long now = System.nanoTime();
+		
+		// Requests already in flight when the limit was cut report the same overload; count it once.
+		long window = _baselineNanos == Long.MAX_VALUE ? 100000000L : Math.max(_baselineNanos, 10000000L);
+		
+		if(_decreases > 0 && now - _lastDecrease < window) return;
+		
+		_limit = Math.max(_minConcurrency, _limit * BACKOFF_RATIO);
+		_lastDecrease = now;
+		_decreases++;
+	}
+	
+	private void pause(String retryAfter) {
+		if(retryAfter == null) return;
+		
+		try {
+			long seconds = Long.parseLong(retryAfter.trim());
+			long until = System.nanoTime() + seconds * 1000000000L;
+			
+			if(until - _pausedUntil > 0) _pausedUntil = until;
+		} catch (NumberFormatException e) {
+			// An HTTP date; the concurrency cut is enough.
+		}
+	}
+	
+	/**
+	 * Gives back the concurrency slot of a request that was sent.
+	 */
+	synchronized void release() {
+		_inFlight--;
+		_sent--;
+		notifyAll();
+	}
+	
+	/**
+	 * Wraps a response so that closing it gives back its concurrency slot, once.
+	 */
+	Transport.Response track(final Transport.Response response) {
+		final AtomicBoolean released = new AtomicBoolean();
+		
+		return new Transport.Response() {
+			public int getStatus() {
+				return response.getStatus();
+			}
+			
+			public String getHeader(String name) {
+				return response.getHeader(name);
+			}
+			
+			public InputStream getBody() throws IOException {
+				return response.getBody();
+			}
+			
+			public void close() throws IOException {
+				try {
+					response.close();
+				} finally {
+					if(released.compareAndSet(false, true)) release();
+				}
+			}
+		};
+	}
+}
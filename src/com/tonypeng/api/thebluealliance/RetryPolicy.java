@@ -0,0 +1,221 @@
+/*
+ * The Blue Alliance Java API - RetryPolicy.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a failed request is sent again, and when a slow one is hedged.
+ * 
+ * <p>A request is retried when it fails without a response, or when the server answers
+ * <code>429</code>, <code>500</code>, <code>502</code>, <code>503</code> or <code>504</code>.  The
+ * wait before each retry is drawn uniformly from zero up to <code>baseDelay</code> doubled for each
+ * earlier attempt and capped at <code>maxDelay</code> ("full jitter"), so clients that failed
+ * together do not retry together.  A <code>Retry-After</code> header longer than the drawn wait is
+ * honored, unless it is longer than <code>maxDelay</code>, in which case the response is returned
+ * as it is.</p>
+ * 
+ * <p>With hedging enabled, a request still waiting for its response after the configured latency
+ * percentile gets a duplicate; whichever answers first is used and the other is closed.  Every API
+ * request is a GET, so duplicates are safe.  The original is sent on the calling thread and the
+ * duplicate from a small pool of its own, which skips hedging when it is busy; the duplicate can only
+ * cut a slow original short over a <code>Transport.Abortable</code> transport, such as
+ * <code>HttpTransport</code>.</p>
+ */
+public class RetryPolicy {
+	
+	private static final int SAMPLE_COUNT = 256;
+	private static final int MIN_SAMPLES = 20;
+	
+	private final int _maxAttempts;
+	private final long _baseDelayNanos;
+	private final long _maxDelayNanos;
+	private final double _hedgePercentile;
+	
+	private final long[] _samples = new long[SAMPLE_COUNT];
+	private long _sampleCount;
+	private long _hedgeDelayNanos = -1;
+	
+	private final AtomicLong _retries = new AtomicLong();
+	private final AtomicLong _hedges = new AtomicLong();
+	private final AtomicLong _hedgeWins = new AtomicLong();
+	
+	/**
+	 * Creates an instance of RetryPolicy without hedging.
+	 * 
+	 * @param maxAttempts The most times a request is sent, including the first.
+	 * @param baseDelay The longest wait before the first retry.
+	 * @param maxDelay The longest wait before any retry.
+	 * @param unit The unit of <code>baseDelay</code> and <code>maxDelay</code>.
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+		this(maxAttempts, baseDelay, maxDelay, unit, 0);
+	}
+	
+	/**
+	 * Creates an instance of RetryPolicy.
+	 * 
+	 * @param maxAttempts The most times a request is sent, including the first.
+	 * @param baseDelay The longest wait before the first retry.
+	 * @param maxDelay The longest wait before any retry.
+	 * @param unit The unit of <code>baseDelay</code> and <code>maxDelay</code>.
+	 * @param hedgePercentile The response latency percentile, such as <code>95</code>, after which a
+	 *        duplicate request is sent, or <code>0</code> to never hedge.
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit, double hedgePercentile) {
+		if(maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts");
+		if(baseDelay < 0 || maxDelay < baseDelay) throw new IllegalArgumentException("delay");
+		if(hedgePercentile < 0 || hedgePercentile >= 100) throw new IllegalArgumentException("hedgePercentile");
+		
+		_maxAttempts = maxAttempts;
+		_baseDelayNanos = unit.toNanos(baseDelay);
+		_maxDelayNanos = unit.toNanos(maxDelay);
+		_hedgePercentile = hedgePercentile;
+	}
+	
+	/**
+	 * Gets the most times a request is sent.
+	 * 
+	 * @return The maximum number of attempts.
+	 */
+	public int getMaxAttempts() {
+		return _maxAttempts;
+	}
+	
+	/**
+	 * Determines if hedging is enabled.
+	 * 
+	 * @return <code>true</code> if slow requests are hedged; <code>false</code> otherwise.
+	 */
+	public boolean isHedging() {
+		return _hedgePercentile > 0;
+	}
+	
+	/**
+	 * Determines if a response status is worth retrying.
+	 * 
+	 * @param status The HTTP status.
+	 * @return <code>true</code> if the request should be retried; <code>false</code> otherwise.
+	 */
+	public boolean isRetryable(int status) {
+		return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+	}
+	
+	/**
+	 * Determines if a failure is worth retrying.
+	 * 
+	 * @param e The failure.
+	 * @return <code>true</code> if the request should be retried; <code>false</code> otherwise.
+	 */
+	public boolean isRetryable(IOException e) {
+		return !(e instanceof MalformedURLException);
+	}
+	
+	/**
+	 * Computes the wait before a retry.
+	 * 
+	 * @param attempt The number of attempts made so far.
+	 * @param retryAfter The <code>Retry-After</code> header of the failed response, or <code>null</code>.
+	 * @return The wait in nanoseconds, or <code>-1</code> if the server asked for a longer wait than <code>maxDelay</code>.
+	 */
+	long delayNanos(int attempt, String retryAfter) {
+		long cap = Math.min(_maxDelayNanos, _baseDelayNanos << Math.min(attempt - 1, 30));
+		long delay = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+		
+		if(retryAfter != null) {
+			try {
+				long requested = TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+				
+				if(requested > _maxDelayNanos) return -1;
+				
+				delay = Math.max(delay, requested);
+			} catch (NumberFormatException e) {
+				// An HTTP date; use the computed wait.
+			}
+		}
+		
+		return delay;
+	}
+	
+	/**
+	 * Records the time a response took to arrive.
+	 */
+	synchronized void recordLatency(long nanos) {
+		_samples[(int)(_sampleCount % SAMPLE_COUNT)] = nanos;
+		_sampleCount++;
+		
+		// Recompute the percentile every few samples rather than on every request.
+		if(_sampleCount >= MIN_SAMPLES && _sampleCount % 16 == 0) {
+			long[] sorted = Arrays.copyOf(_samples, (int)Math.min(_sampleCount, SAMPLE_COUNT));
+			Arrays.sort(sorted);
+			_hedgeDelayNanos = sorted[(int)Math.min(sorted.length - 1, Math.ceil(sorted.length * _hedgePercentile / 100) - 1)];
+		}
+	}
+	
+	/**
+	 * Gets how long to wait for a response before hedging.
+	 * 
+	 * @return The wait in nanoseconds, or <code>-1</code> if requests are not hedged yet.
+	 */
+	synchronized long hedgeDelayNanos() {
+		return isHedging() ? _hedgeDelayNanos : -1;
+	}
+	
+	void recordRetry() {
+		_retries.incrementAndGet();
+	}
+	
+	void recordHedge(boolean won) {
+		_hedges.incrementAndGet();
+		
+		if(won) _hedgeWins.incrementAndGet();
+	}
+	
+	/**
+	 * Gets the number of retries made.
+	 * 
+	 * @return The number of retries.
+	 */
+	public long getRetryCount() {
+		return _retries.get();
+	}
+	
+	/**
+	 * Gets the number of hedged requests sent.
+	 * 
+	 * @return The number of hedges.
+	 */
+	public long getHedgeCount() {
+		return _hedges.get();
+	}
+	
+	/**
+	 * Gets the number of hedged requests that answered before the original.
+	 * 
+	 * @return The number of hedges that won.
+	 */
+	public long getHedgeWinCount() {
+		return _hedgeWins.get();
+	}
+	
+	/**
+	 * Gets the current hedging threshold.
+	 * 
+	 * @return The latency percentile in nanoseconds, or <code>-1</code> if it is not yet known or hedging is off.
+	 */
+	public long getHedgeThresholdNanos() {
+		return hedgeDelayNanos();
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * The Blue Alliance Java API - SeasonCrawler.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import com.tonypeng.api.thebluealliance.BLUE.Events.Event;
+import com.tonypeng.api.thebluealliance.BLUE.Matches.Match;
+import com.tonypeng.api.thebluealliance.BLUE.Teams.Team;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Mirrors a whole season: every event in a year, with each event's teams and matches.
+ * 
+ * <p>The event list is requested first, then each event's team and match lists on a
+ * work-stealing pool of <code>parallelism</code> threads, paced by a <code>RateLimiter</code>.
+ * Every response is written to a checkpoint file as it arrives.  If a crawl is interrupted
+ * or some requests fail, running it again with the same checkpoint reads the finished
+ * endpoints back from the file and only requests the rest.  The checkpoint is deleted once
+ * a crawl completes without failures.</p>
+ * 
+ * <p>The checkpoint is a <code>DiskResponseStore</code>; the models returned make their further
+ * requests through the client given here, not through the checkpoint.</p>
+ */
+public class SeasonCrawler {
+	
+	/**
+	 * The request rate used when neither the crawler nor the client is given a rate limiter.
+	 */
+	public static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+	
+	private final BLUEClient _client;
+	private final File _checkpoint;
+	private final int _parallelism;
+	private final RateLimiter _rateLimiter;
+	
+	/**
+	 * The outcome of a crawl.
+	 */
+	public static final class Result {
+		private final int _year;
+		private final Event[] _events;
+		private final Map<String, Team[]> _teams;
+		private final Map<String, Match[]> _matches;
+		private final List<FetchResult<Object[]>> _failures;
+		private final long _requests;
+		private final long _resumed;
+		private final long _bytes;
+		private final long _elapsedNanos;
+		
+		Result(int year, Event[] events, Map<String, Team[]> teams, Map<String, Match[]> matches,
+				List<FetchResult<Object[]>> failures, long requests, long resumed, long bytes, long elapsedNanos) {
+			_year = year;
+			_events = events;
+			_teams = teams;
+			_matches = matches;
+			_failures = Collections.unmodifiableList(failures);
+			_requests = requests;
+			_resumed = resumed;
+			_bytes = bytes;
+			_elapsedNanos = elapsedNanos;
+		}
+		
+		/**
+		 * Gets the year crawled.
+		 * 
+		 * @return The year.
+		 */
+		public int getYear() {
+			return _year;
+		}
+		
+		/**
+		 * Gets the events in the year.
+		 * 
+		 * @return The events.
+		 */
+		public Event[] getEvents() {
+			return _events.clone();
+		}
+		
+		/**
+		 * Gets the teams that attended an event.
+		 * 
+		 * @param eventKey The event key.
+		 * @return The teams, or <code>null</code> if they could not be fetched.
+		 */
+		public Team[] getTeams(String eventKey) {
+			Team[] teams = _teams.get(eventKey);
+			
+			return teams == null ? null : teams.clone();
+		}
+		
+		/**
+		 * Gets the matches played at an event.
+		 * 
+		 * @param eventKey The event key.
+		 * @return The matches, or <code>null</code> if they could not be fetched.
+		 */
+		public Match[] getMatches(String eventKey) {
+			Match[] matches = _matches.get(eventKey);
+			
+			return matches == null ? null : matches.clone();
+		}
+		
+		/**
+		 * Gets the requests that failed.  Their keys are the API paths, such as <code>/event/2014sac/teams</code>.
+		 * 
+		 * @return An unmodifiable list of the failed requests.
+		 */
+		public List<FetchResult<Object[]>> getFailures() {
+			return _failures;
+		}
+		
+		/**
+		 * Determines if every request succeeded.
+		 * 
+		 * @return <code>true</code> if nothing failed; <code>false</code> otherwise.
+		 */
+		public boolean isComplete() {
+			return _failures.isEmpty();
+		}
+		
+		/**
+		 * Collects the crawled data into a snapshot: the events, every team that attended one, and every match.
+		 * 
+		 * @return The snapshot.
+		 */
+		public SeasonSnapshot toSnapshot() {
+			Map<String, Team> teams = new TreeMap<String, Team>();
+			List<Match> matches = new ArrayList<Match>();
+			
+			for(Event event : _events) {
+				Team[] attending = _teams.get(event.getEventKey());
+				Match[] played = _matches.get(event.getEventKey());
+				
+				if(attending != null) {
+					for(Team team : attending) {
+						if(!teams.containsKey(team.getTeamKey())) teams.put(team.getTeamKey(), team);
+					}
+				}
+				
+				if(played != null) Collections.addAll(matches, played);
+			}
+			
+			return new SeasonSnapshot(teams.values().toArray(new Team[teams.size()]), _events, matches.toArray(new Match[matches.size()]));
+		}
+		
+		/**
+		 * Gets the number of requests sent to the server.
+		 * 
+		 * @return The number of requests.
+		 */
+		public long getRequestCount() {
+			return _requests;
+		}
+		
+		/**
+		 * Gets the number of responses read back from the checkpoint instead of requested.
+		 * 
+		 * @return The number of resumed responses.
+		 */
+		public long getResumedCount() {
+			return _resumed;
+		}
+		
+		/**
+		 * Gets the number of body bytes downloaded.
+		 * 
+		 * @return The number of bytes.
+		 */
+		public long getBytes() {
+			return _bytes;
+		}
+		
+		/**
+		 * Gets the duration of the crawl.
+		 * 
+		 * @return The duration, in nanoseconds.
+		 */
+		public long getElapsedNanos() {
+			return _elapsedNanos;
+		}
+		
+		/**
+		 * Gets the rate at which requests were completed.
+		 * 
+		 * @return Requests per second.
+		 */
+		public double getRequestsPerSecond() {
+			return _elapsedNanos == 0 ? 0 : _requests * 1e9 / _elapsedNanos;
+		}
+		
+		/**
+		 * Gets the rate at which body bytes were downloaded.
+		 * 
+		 * @return Megabytes (10^6 bytes) per second.
+		 */
+		public double getMegabytesPerSecond() {
+			return _elapsedNanos == 0 ? 0 : _bytes * 1e3 / _elapsedNanos;
+		}
+		
+		/**
+		 * Returns the <code>String</code> representation of this <code>Result</code>.
+		 */
+		public String toString() {
+			return String.format("{ %d, %d events, %d requests, %d resumed, %d failed, %.1f req/s, %.2f MB/s }", _year, _events.length,
+					_requests, _resumed, _failures.size(), getRequestsPerSecond(), getMegabytesPerSecond());
+		}
+	}
+	
+	/**
+	 * Creates an instance of SeasonCrawler with the client's bulk parallelism, paced by the client's
+	 * rate limiter, or at <code>DEFAULT_REQUESTS_PER_SECOND</code> if it has none.
+	 * 
+	 * @param client The client to make requests with.
+	 * @param checkpoint The checkpoint file.  It is created if it does not exist.
+	 */
+	public SeasonCrawler(BLUEClient client, File checkpoint) {
+		this(client, checkpoint, client.getBulkParallelism(), client.getRateLimiter() != null ? client.getRateLimiter()
+				: new RateLimiter(DEFAULT_REQUESTS_PER_SECOND, client.getBulkParallelism(), 1, client.getBulkParallelism()));
+	}
+	
+	/**
+	 * Creates an instance of SeasonCrawler.
+	 * 
+	 * @param client The client to make requests with.
+	 * @param checkpoint The checkpoint file.  It is created if it does not exist.
+	 * @param parallelism The number of worker threads, and so the maximum number of requests in flight.
+	 * @param rateLimiter The limiter requests wait on, or <code>null</code> to send them as fast as the workers allow.
+	 */
+	public SeasonCrawler(BLUEClient client, File checkpoint, int parallelism, RateLimiter rateLimiter) {
+		if(client == null) throw new IllegalArgumentException("client");
+		if(checkpoint == null) throw new IllegalArgumentException("checkpoint");
+		if(parallelism <= 0) throw new IllegalArgumentException("parallelism");
+		
+		_client = client;
+		_checkpoint = checkpoint;
+		_parallelism = parallelism;
+		_rateLimiter = rateLimiter;
+	}
+	
+	/**
+	 * Gets the checkpoint file.
+	 * 
+	 * @return The checkpoint file.
+	 */
+	public File getCheckpoint() {
+		return _checkpoint;
+	}
+	
+	/**
+	 * Gets the number of worker threads.
+	 * 
+	 * @return The parallelism.
+	 */
+	public int getParallelism() {
+		return _parallelism;
+	}
+	
+	/**
+	 * Gets the limiter requests wait on.
+	 * 
+	 * @return The rate limiter, or <code>null</code> if requests are not paced.
+	 */
+	public RateLimiter getRateLimiter() {
+		return _rateLimiter;
+	}
+	
+	/**
+	 * Crawls every event in <code>year</code>, with its teams and matches.
+	 * 
+	 * @param year The year.
+	 * @return The crawled data.  Requests for individual events that failed are listed in its failures.
+	 * @throws BLUEApiException If the checkpoint cannot be opened, the event list cannot be fetched, or the crawl is interrupted.
+	 */
+	public Result crawl(int year)
+		throws BLUEApiException
+	{
+		DiskResponseStore store;
+		
+		try {
+			store = DiskResponseStore.open(_checkpoint);
+		} catch (IOException e) {
+			throw new BLUEApiException("Could not open the checkpoint.", e);
+		}
+		
+		ExecutorService pool = Executors.newWorkStealingPool(_parallelism);
+		boolean complete = false;
+		
+		try {
+			// Responses already in the checkpoint are answered from it without contacting the server.
+			BLUEClient.Builder builder = _client.toBuilder()
+				.endpointCache(null)
+				.diskStore(store, DiskResponseStore.Policy.OFFLINE)
+				.executor(pool);
+			
+			if(_rateLimiter != null) builder.rateLimiter(_rateLimiter);
+			
+			Crawl crawl = new Crawl(builder.build(), store);
+			long start = System.nanoTime();
+			
+			Event[] events = crawl.fetch("/events/" + year, ModelReader.EVENTS);
+			
+			List<String> keys = new ArrayList<String>(events.length * 2);
+			List<BLUEClient.ApiCall<Object[]>> calls = new ArrayList<BLUEClient.ApiCall<Object[]>>(events.length * 2);
+			
+			for(Event event : events) {
+				crawl.add(keys, calls, "/event/" + event.getEventKey() + "/teams", ModelReader.TEAMS);
+				crawl.add(keys, calls, "/event/" + event.getEventKey() + "/matches", ModelReader.MATCHES);
+			}
+			
+			List<FetchResult<Object[]>> fetched = Fanout.run(pool, _parallelism, keys, calls);
+			long elapsed = System.nanoTime() - start;
+			
+			Map<String, Team[]> teams = new LinkedHashMap<String, Team[]>();
+			Map<String, Match[]> matches = new LinkedHashMap<String, Match[]>();
+			List<FetchResult<Object[]>> failures = new ArrayList<FetchResult<Object[]>>();
+			
+			for(int i = 0; i < events.length; i++) {
+				FetchResult<Object[]> eventTeams = fetched.get(i * 2);
+				FetchResult<Object[]> eventMatches = fetched.get(i * 2 + 1);
+				
+				if(eventTeams.isSuccess()) {
+					teams.put(events[i].getEventKey(), (Team[])eventTeams.getValue());
+				} else {
+					failures.add(eventTeams);
+				}
+				
+				if(eventMatches.isSuccess()) {
+					matches.put(events[i].getEventKey(), (Match[])eventMatches.getValue());
+				} else {
+					failures.add(eventMatches);
+				}
+			}
+			
+			complete = failures.isEmpty();
+			
+			return new Result(year, events, teams, matches, failures, crawl._requests.get(), crawl._resumed.get(), crawl._bytes.get(), elapsed);
+		} finally {
+			pool.shutdownNow();
+			
+			try {
+				store.close();
+			} catch (IOException e) {
+				// Every response was already written; nothing useful can be done here.
+			}
+			
+			if(complete) _checkpoint.delete();
+		}
+	}
+	
+	/**
+	 * The state of one crawl: the client reading through the checkpoint, and its counters.
+	 */
+	private final class Crawl {
+		final BLUEClient _crawlClient;
+		final DiskResponseStore _store;
+		final AtomicLong _requests = new AtomicLong();
+		final AtomicLong _resumed = new AtomicLong();
+		final AtomicLong _bytes = new AtomicLong();
+		
+		Crawl(BLUEClient crawlClient, DiskResponseStore store) {
+			_crawlClient = crawlClient;
+			_store = store;
+		}
+		
+		<T> T fetch(String apiReq, final BLUEClient.BodyParser<T> parser)
+			throws BLUEApiException
+		{
+			String endpoint = _crawlClient.getApiBase() + apiReq;
+			boolean resumed = _store.contains(endpoint);
+			
+			// Models are bound to the caller's client, which outlives the checkpoint.
+			T value = _crawlClient.request(apiReq, new BLUEClient.BodyParser<T>() {
+				public T parse(BLUEClient client, Reader reader) throws IOException, ParseException {
+					return parser.parse(_client, reader);
+				}
+			});
+			
+			if(resumed) {
+				_resumed.incrementAndGet();
+			} else {
+				DiskResponseStore.Record record = _store.get(endpoint);
+				
+				_requests.incrementAndGet();
+				if(record != null) _bytes.addAndGet(record.getBodyLength());
+			}
+			
+			return value;
+		}
+		
+		void add(List<String> keys, List<BLUEClient.ApiCall<Object[]>> calls, final String apiReq, final BLUEClient.BodyParser<? extends Object[]> parser) {
+			keys.add(apiReq);
+			calls.add(new BLUEClient.ApiCall<Object[]>() {
+				public Object[] call() throws BLUEApiException {
+					return fetch(apiReq, parser);
+				}
+			});
+		}
+	}
+}
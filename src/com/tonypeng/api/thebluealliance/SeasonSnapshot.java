@@ -0,0 +1,459 @@
+/*
+ * The Blue Alliance Java API - SeasonSnapshot.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.Events;
+import com.tonypeng.api.thebluealliance.BLUE.Matches;
+import com.tonypeng.api.thebluealliance.BLUE.Teams;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An archive of teams, events and matches in a compact binary format.
+ * 
+ * <p>Every string is written once to a dictionary and referred to by index, so team keys,
+ * event keys and competition levels shared by thousands of matches cost a few bytes each.
+ * Numbers and scores are written as variable-length integers, and match keys that follow the
+ * usual <code>&lt;event&gt;_&lt;level&gt;[set]m&lt;match&gt;</code> pattern are not written at all.
+ * Strings read from a snapshot are shared between the objects that use them.</p>
+ */
+public final class SeasonSnapshot {
+	
+	private static final int MAGIC = 0x424c5553;
+	private static final int VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final Teams.Team[] _teams;
+	private final Events.Event[] _events;
+	private final Matches.Match[] _matches;
+	
+	/**
+	 * Creates a snapshot of the given data.
+	 * 
+	 * @param teams The teams.
+	 * @param events The events.
+	 * @param matches The matches, of any number of events.
+	 */
+	public SeasonSnapshot(Teams.Team[] teams, Events.Event[] events, Matches.Match[] matches) {
+		if(teams == null) throw new IllegalArgumentException("teams");
+		if(events == null) throw new IllegalArgumentException("events");
+		if(matches == null) throw new IllegalArgumentException("matches");
+		
+		_teams = teams.clone();
+		_events = events.clone();
+		_matches = matches.clone();
+	}
+	
+	/**
+	 * Gets the teams in this snapshot.
+	 * 
+	 * @return The teams.
+	 */
+	public Teams.Team[] getTeams() {
+		return _teams.clone();
+	}
+	
+	/**
+	 * Gets the events in this snapshot.
+	 * 
+	 * @return The events.
+	 */
+	public Events.Event[] getEvents() {
+		return _events.clone();
+	}
+	
+	/**
+	 * Gets the matches in this snapshot.
+	 * 
+	 * @return The matches.
+	 */
+	public Matches.Match[] getMatches() {
+		return _matches.clone();
+	}
+	
+	/**
+	 * Gets the matches of one event, in snapshot order.
+	 * 
+	 * @param eventKey The event key.
+	 * @return The event's matches.
+	 */
+	public Matches.Match[] getMatches(String eventKey) {
+		List<Matches.Match> matches = new ArrayList<Matches.Match>();
+		
+		for(Matches.Match match : _matches) {
+			if(eventKey.equals(match.getEventKey())) matches.add(match);
+		}
+		
+		return matches.toArray(new Matches.Match[matches.size()]);
+	}
+	
+	/**
+	 * Writes this snapshot to a file.
+	 * 
+	 * @param file The file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(File file)
+		throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes this snapshot to a stream.
+	 * 
+	 * @param out The stream.  It is not closed.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	public void write(OutputStream out)
+		throws IOException
+	{
+		out.write(toByteArray());
+	}
+	
+	/**
+	 * Encodes this snapshot.
+	 * 
+	 * @return The encoded snapshot.
+	 */
+	public byte[] toByteArray() {
+		Encoder body = new Encoder();
+		
+		body.writeVarint(_teams.length);
+		
+		for(Teams.Team team : _teams) {
+			body.writeString(team.getWebsite());
+			body.writeString(team.getName());
+			body.writeString(team.getLocality());
+			body.writeString(team.getRegion());
+			body.writeString(team.getCountry());
+			body.writeString(team.getLocation());
+			body.writeSigned(team.getTeamNumber());
+			body.writeString(team.getTeamKey());
+			body.writeString(team.getNickName());
+		}
+		
+		body.writeVarint(_events.length);
+		
+		for(Events.Event event : _events) {
+			body.writeString(event.getEventKey());
+			body.writeString(event.getName());
+			body.writeString(event.getShortName());
+			body.writeString(event.getEventCode());
+			body.writeString(event.getEventTypeString());
+			body.writeSigned(event.getEventType());
+			body.writeSigned(event.getYear());
+			body.writeString(event.getLocation());
+			body.writeVarint(event.isOfficial() ? 1 : 0);
+		}
+		
+		body.writeVarint(_matches.length);
+		
+		for(Matches.Match match : _matches) {
+			String key = match.getMatchKey();
+			boolean derived = key != null && key.equals(matchKey(match.getEventKey(), match.getCompLevel(), match.getSetNumber(), match.getMatchNumber()));
+			
+			body.writeString(match.getEventKey());
+			body.writeString(match.getCompLevel());
+			body.writeSigned(match.getSetNumber());
+			body.writeSigned(match.getMatchNumber());
+			body.writeVarint(derived ? 1 : 0);
+			
+			if(!derived) body.writeString(key);
+			
+			writeAlliance(body, match, 0, match.getRedTeamCount(), match.getRedAllianceScore());
+			writeAlliance(body, match, match.getRedTeamCount(), match.getBlueTeamCount(), match.getBlueAllianceScore());
+		}
+		
+		Encoder out = new Encoder();
+		out.writeInt(MAGIC);
+		out.writeVarint(VERSION);
+		out.writeVarint(body._strings.size());
+		
+		for(String s : body._strings) {
+			byte[] bytes = s.getBytes(UTF_8);
+			out.writeVarint(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+		
+		out.write(body._buffer, 0, body._length);
+		
+		return Arrays.copyOf(out._buffer, out._length);
+	}
+	
+	private static void writeAlliance(Encoder body, Matches.Match match, int offset, int count, int score) {
+		body.writeVarint(count + 1);
+		
+		for(int i = 0; i < count; i++) {
+			body.writeString(match._teamKeys[offset + i]);
+		}
+		
+		body.writeSigned(score);
+	}
+	
+	/**
+	 * Reads a snapshot from a file.
+	 * 
+	 * @param client The client teams and events make further requests through.
+	 * @param file The file.
+	 * @return The snapshot.
+	 * @throws IOException If the file cannot be read or is not a snapshot.
+	 */
+	public static SeasonSnapshot load(BLUEClient client, File file)
+		throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		
+		try {
+			return read(client, in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads a snapshot from a stream.
+	 * 
+	 * @param client The client teams and events make further requests through.
+	 * @param in The stream.  It is read to the end but not closed.
+	 * @return The snapshot.
+	 * @throws IOException If the stream cannot be read or is not a snapshot.
+	 */
+	public static SeasonSnapshot read(BLUEClient client, InputStream in)
+		throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		byte[] buffer = new byte[16 * 1024];
+		int n;
+		
+		while((n = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, n);
+		}
+		
+		return fromByteArray(client, bytes.toByteArray());
+	}
+	
+	/**
+	 * Decodes a snapshot.
+	 * 
+	 * @param client The client teams and events make further requests through.
+	 * @param data The encoded snapshot.
+	 * @return The snapshot.
+	 * @throws IOException If <code>data</code> is not a snapshot.
+	 */
+	public static SeasonSnapshot fromByteArray(BLUEClient client, byte[] data)
+		throws IOException
+	{
+		Decoder in = new Decoder(data);
+		
+		try {
+			if(in.readInt() != MAGIC) throw new IOException("Not a season snapshot.");
+			
+			int version = in.readVarint();
+			
+			if(version != VERSION) throw new IOException("Unsupported season snapshot version " + version + ".");
+			
+			String[] strings = new String[in.readVarint()];
+			
+			for(int i = 0; i < strings.length; i++) {
+				int length = in.readVarint();
+				strings[i] = new String(data, in._pos, length, UTF_8);
+				in._pos += length;
+			}
+			
+			in._strings = strings;
+			
+			Teams.Team[] teams = new Teams.Team[in.readVarint()];
+			
+			for(int i = 0; i < teams.length; i++) {
+				teams[i] = new Teams.Team(client, in.readString(), in.readString(), in.readString(), in.readString(),
+						in.readString(), in.readString(), in.readSigned(), in.readString(), in.readString());
+			}
+			
+			Events.Event[] events = new Events.Event[in.readVarint()];
+			
+			for(int i = 0; i < events.length; i++) {
+				events[i] = new Events.Event(client, in.readString(), in.readString(), in.readString(), in.readString(),
+						in.readString(), in.readSigned(), in.readSigned(), in.readString(), in.readVarint() != 0);
+			}
+			
+			Matches.Match[] matches = new Matches.Match[in.readVarint()];
+			int[] score = new int[1];
+			
+			for(int i = 0; i < matches.length; i++) {
+				String eventKey = in.readString();
+				String compLevel = in.readString();
+				int setNumber = in.readSigned();
+				int matchNumber = in.readSigned();
+				String key = in.readVarint() != 0 ? matchKey(eventKey, compLevel, setNumber, matchNumber) : in.readString();
+				
+				String[] red = readAlliance(in, score);
+				int redScore = score[0];
+				String[] blue = readAlliance(in, score);
+				int blueScore = score[0];
+				
+				matches[i] = new Matches.Match(key, compLevel, setNumber, matchNumber, eventKey, red, redScore, blue, blueScore);
+			}
+			
+			return new SeasonSnapshot(teams, events, matches);
+		} catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Corrupt season snapshot.", e);
+		}
+	}
+	
+	private static String[] readAlliance(Decoder in, int[] score) {
+		int count = in.readVarint();
+		
+		if(count == 0) {
+			score[0] = -1;
+			return null;
+		}
+		
+		String[] teams = new String[count - 1];
+		
+		for(int i = 0; i < teams.length; i++) {
+			teams[i] = in.readString();
+		}
+		
+		score[0] = in.readSigned();
+		
+		return teams;
+	}
+	
+	private static String matchKey(String eventKey, String compLevel, int setNumber, int matchNumber) {
+		if(eventKey == null || compLevel == null) return null;
+		
+		if(compLevel.equals("qm")) return eventKey + "_qm" + matchNumber;
+		
+		return eventKey + "_" + compLevel + setNumber + "m" + matchNumber;
+	}
+	
+	/**
+	 * Writes variable-length integers and dictionary references into a growable buffer.
+	 */
+	private static final class Encoder {
+		byte[] _buffer = new byte[64 * 1024];
+		int _length;
+		final HashMap<String, Integer> _dictionary = new HashMap<String, Integer>();
+		final List<String> _strings = new ArrayList<String>();
+		
+		void ensure(int n) {
+			if(_length + n > _buffer.length) _buffer = Arrays.copyOf(_buffer, Math.max(_buffer.length * 2, _length + n));
+		}
+		
+		void write(byte[] b, int off, int len) {
+			ensure(len);
+			System.arraycopy(b, off, _buffer, _length, len);
+			_length += len;
+		}
+		
+		void writeInt(int v) {
+			ensure(4);
+			_buffer[_length++] = (byte)(v >>> 24);
+			_buffer[_length++] = (byte)(v >>> 16);
+			_buffer[_length++] = (byte)(v >>> 8);
+			_buffer[_length++] = (byte)v;
+		}
+		
+		void writeVarint(int v) {
+			ensure(5);
+			
+			while((v & ~0x7f) != 0) {
+				_buffer[_length++] = (byte)((v & 0x7f) | 0x80);
+				v >>>= 7;
+			}
+			
+			_buffer[_length++] = (byte)v;
+		}
+		
+		void writeSigned(int v) {
+			writeVarint((v << 1) ^ (v >> 31));
+		}
+		
+		/**
+		 * Writes a reference to <code>s</code>: <code>0</code> for <code>null</code>, otherwise its dictionary index plus one.
+		 */
+		void writeString(String s) {
+			if(s == null) {
+				writeVarint(0);
+				return;
+			}
+			
+			Integer index = _dictionary.get(s);
+			
+			if(index == null) {
+				index = _strings.size();
+				_dictionary.put(s, index);
+				_strings.add(s);
+			}
+			
+			writeVarint(index + 1);
+		}
+	}
+	
+	/**
+	 * Reads variable-length integers and dictionary references from an array.
+	 */
+	private static final class Decoder {
+		final byte[] _data;
+		int _pos;
+		String[] _strings;
+		
+		Decoder(byte[] data) {
+			_data = data;
+		}
+		
+		int readInt() {
+			int v = ((_data[_pos] & 0xff) << 24) | ((_data[_pos + 1] & 0xff) << 16) | ((_data[_pos + 2] & 0xff) << 8) | (_data[_pos + 3] & 0xff);
+			_pos += 4;
+			return v;
+		}
+		
+		int readVarint() {
+			int v = 0;
+			int shift = 0;
+			byte b;
+			
+			do {
+				b = _data[_pos++];
+				v |= (b & 0x7f) << shift;
+				shift += 7;
+			} while(b < 0);
+			
+			return v;
+		}
+		
+		int readSigned() {
+			int v = readVarint();
+			return (v >>> 1) ^ -(v & 1);
+		}
+		
+		String readString() {
+			int ref = readVarint();
+			return ref == 0 ? null : _strings[ref - 1];
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * The Blue Alliance Java API - TeamSeason.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import com.tonypeng.api.thebluealliance.BLUE.BLUEApiException;
+import com.tonypeng.api.thebluealliance.BLUE.Events.Event;
+import com.tonypeng.api.thebluealliance.BLUE.Matches.Match;
+import com.tonypeng.api.thebluealliance.BLUE.Teams.Team;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A team's season: the events it attended in a year, with its matches and the teams it
+ * met at each one.  Returned by <code>Team.getEventsWithMatches</code>.
+ * 
+ * <p>Each event's matches and teams are fetched separately, so one can fail without the
+ * other; a failed half is empty, and its exception is kept on the event.</p>
+ */
+public final class TeamSeason {
+	
+	/**
+	 * One event of a season.
+	 */
+	public static final class EventEntry {
+		private final Event _event;
+		private final Match[] _matches;
+		private final Team[] _teams;
+		private final BLUEApiException _exception;
+		
+		EventEntry(Event event, Match[] matches, Team[] teams, BLUEApiException exception) {
+			_event = event;
+			_matches = matches;
+			_teams = teams;
+			_exception = exception;
+		}
+		
+		/**
+		 * Gets the event.
+		 * 
+		 * @return The event.
+		 */
+		public Event getEvent() {
+			return _event;
+		}
+		
+		/**
+		 * Gets the team's matches at this event, in the order the API lists them.
+		 * 
+		 * @return The matches the team played in, or an empty array if they could not be fetched.
+		 */
+		public Match[] getMatches() {
+			return _matches.clone();
+		}
+		
+		/**
+		 * Gets the teams that attended this event.
+		 * 
+		 * @return The attending teams, or an empty array if they could not be fetched.
+		 */
+		public Team[] getTeams() {
+			return _teams.clone();
+		}
+		
+		/**
+		 * Determines if both the matches and teams of this event were fetched.
+		 * 
+		 * @return <code>true</code> if nothing failed; <code>false</code> otherwise.
+		 */
+		public boolean isComplete() {
+			return _exception == null;
+		}
+		
+		/**
+		 * Gets the exception a request for this event failed with.
+		 * 
+		 * @return The first exception, or <code>null</code> if nothing failed.
+		 */
+		public BLUEApiException getException() {
+			return _exception;
+		}
+		
+		/**
+		 * Returns the <code>String</code> representation of this <code>EventEntry</code>.
+		 */
+		public String toString() {
+			return String.format("{ %s, %d matches, %d teams%s }", _event.getEventKey(), _matches.length, _teams.length,
+					_exception == null ? "" : ", " + _exception);
+		}
+	}
+	
+	private final String _teamKey;
+	private final int _year;
+	private final List<EventEntry> _events;
+	private int _wins;
+	private int _losses;
+	private int _ties;
+	
+	TeamSeason(String teamKey, int year, List<EventEntry> events) {
+		_teamKey = teamKey;
+		_year = year;
+		_events = Collections.unmodifiableList(new ArrayList<EventEntry>(events));
+		
+		int teamNumber = MatchTable.teamNumber(teamKey);
+		
+		for(EventEntry entry : _events) {
+			for(Match match : entry._matches) {
+				if(match._redAllianceScore < 0 || match._blueAllianceScore < 0) continue;
+				
+				BLUE.Teams.AllianceColor color = teamNumber > 0 ? match.getAllianceColor(teamNumber) : match.getAllianceColor(teamKey);
+				boolean red = color == BLUE.Teams.AllianceColor.RED;
+				int ours = red ? match._redAllianceScore : match._blueAllianceScore;
+				int theirs = red ? match._blueAllianceScore : match._redAllianceScore;
+				
+				if(ours > theirs) {
+					_wins++;
+				} else if(ours < theirs) {
+					_losses++;
+				} else {
+					_ties++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Selects the matches that <code>teamKey</code> played in.
+	 */
+	static Match[] filter(Match[] matches, String teamKey) {
+		int teamNumber = MatchTable.teamNumber(teamKey);
+		List<Match> filtered = new ArrayList<Match>();
+		
+		for(Match match : matches) {
+			if(teamNumber > 0 ? match.hasTeam(teamNumber) : match.getAllianceColor(teamKey) != null) filtered.add(match);
+		}
+		
+		return filtered.toArray(new Match[filtered.size()]);
+	}
+	
+	/**
+	 * Gets the key of the team.
+	 * 
+	 * @return The team key, such as <code>frc254</code>.
+	 */
+	public String getTeamKey() {
+		return _teamKey;
+	}
+	
+	/**
+	 * Gets the year of the season.
+	 * 
+	 * @return The year.
+	 */
+	public int getYear() {
+		return _year;
+	}
+	
+	/**
+	 * Gets the events the team attended, in the order the API lists them.
+	 * 
+	 * @return An unmodifiable list of the events.
+	 */
+	public List<EventEntry> getEvents() {
+		return _events;
+	}
+	
+	/**
+	 * Gets every match the team played in this season.
+	 * 
+	 * @return The matches, event by event.
+	 */
+	public Match[] getMatches() {
+		List<Match> matches = new ArrayList<Match>();
+		
+		for(EventEntry entry : _events) {
+			Collections.addAll(matches, entry._matches);
+		}
+		
+		return matches.toArray(new Match[matches.size()]);
+	}
+	
+	/**
+	 * Determines if every event's matches and teams were fetched.
+	 * 
+	 * @return <code>true</code> if nothing failed; <code>false</code> otherwise.
+	 */
+	public boolean isComplete() {
+		for(EventEntry entry : _events) {
+			if(!entry.isComplete()) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets the number of played matches the team's alliance won.
+	 * 
+	 * @return The number of wins.
+	 */
+	public int getWins() {
+		return _wins;
+	}
+	
+	/**
+	 * Gets the number of played matches the team's alliance lost.
+	 * 
+	 * @return The number of losses.
+	 */
+	public int getLosses() {
+		return _losses;
+	}
+	
+	/**
+	 * Gets the number of played matches that ended in a tie.
+	 * 
+	 * @return The number of ties.
+	 */
+	public int getTies() {
+		return _ties;
+	}
+	
+	/**
+	 * Returns the <code>String</code> representation of this <code>TeamSeason</code>.
+	 */
+	public String toString() {
+		return String.format("{ %s, %d, %d events, %d-%d-%d }", _teamKey, _year, _events.size(), _wins, _losses, _ties);
+	}
+}
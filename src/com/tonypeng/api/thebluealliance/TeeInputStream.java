@@ -0,0 +1,75 @@
+/*
+ * The Blue Alliance Java API - TeeInputStream.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An <code>InputStream</code> that keeps a copy of the bytes read through it.
+ */
+class TeeInputStream extends FilterInputStream {
+	private final ByteArrayOutputStream _copy = new ByteArrayOutputStream(8 * 1024);
+	
+	TeeInputStream(InputStream in) {
+		super(in);
+	}
+	
+	/**
+	 * Reads the rest of the stream, so the copy holds the whole body.
+	 * 
+	 * @return The bytes read through this stream.
+	 */
+	byte[] drain() throws IOException {
+		byte[] buffer = new byte[4096];
+		
+		while(read(buffer, 0, buffer.length) >= 0) {
+		}
+		
+		return _copy.toByteArray();
+	}
+	
+	public int read() throws IOException {
+		int b = super.read();
+		
+		if(b >= 0) _copy.write(b);
+		
+		return b;
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		
+		if(n > 0) _copy.write(b, off, n);
+		
+		return n;
+	}
+	
+	public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int)Math.min(n, 4096)];
+		long skipped = 0;
+		
+		while(skipped < n) {
+			int r = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			
+			if(r < 0) break;
+			
+			skipped += r;
+		}
+		
+		return skipped;
+	}
+	
+	public boolean markSupported() {
+		return false;
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * The Blue Alliance Java API - Transport.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends HTTP GET requests on behalf of a <code>BLUEClient</code>.
+ * 
+ * <p>Implementations must be safe for use by multiple threads.</p>
+ */
+public interface Transport {
+	
+	/**
+	 * Represents a GET request.
+	 */
+	public static final class Request {
+		private final String _url;
+		private final String _path;
+		private final Map<String, String> _headers;
+		private final int _connectTimeout;
+		private final int _readTimeout;
+		
+		/**
+		 * Creates an instance of Request.
+		 * 
+		 * @param url The full request URL.
+		 * @param path The API path, relative to the API base, such as <code>/team/frc254</code>.
+		 * @param headers The request headers.
+		 * @param connectTimeout The connect timeout in milliseconds, or <code>0</code> for none.
+		 * @param readTimeout The read timeout in milliseconds, or <code>0</code> for none.
+		 */
+		public Request(String url, String path, Map<String, String> headers, int connectTimeout, int readTimeout) {
+			_url = url;
+			_path = path;
+			_headers = Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+			_connectTimeout = connectTimeout;
+			_readTimeout = readTimeout;
+		}
+		
+		/**
+		 * Gets the full request URL.
+		 * 
+		 * @return The request URL.
+		 */
+		public String getUrl() {
+			return _url;
+		}
+		
+		/**
+		 * Gets the API path, relative to the API base.
+		 * 
+		 * @return The API path.
+		 */
+		public String getPath() {
+			return _path;
+		}
+		
+		/**
+		 * Gets the request headers.
+		 * 
+		 * @return An unmodifiable map of the request headers.
+		 */
+		public Map<String, String> getHeaders() {
+			return _headers;
+		}
+		
+		/**
+		 * Gets the connect timeout.
+		 * 
+		 * @return The connect timeout in milliseconds, or <code>0</code> for none.
+		 */
+		public int getConnectTimeout() {
+			return _connectTimeout;
+		}
+		
+		/**
+		 * Gets the read timeout.
+		 * 
+		 * @return The read timeout in milliseconds, or <code>0</code> for none.
+		 */
+		public int getReadTimeout() {
+			return _readTimeout;
+		}
+		
+		/**
+		 * Returns the <code>String</code> representation of this <code>Request</code>.
+		 */
+		public String toString() {
+			return "GET " + _url;
+		}
+	}
+	
+	/**
+	 * Represents a response.  Closing it releases the underlying connection.
+	 */
+	public static interface Response extends Closeable {
+		
+		/**
+		 * Gets the HTTP status code.
+		 * 
+		 * @return The status code.
+		 */
+		int getStatus();
+		
+		/**
+		 * Gets a response header.
+		 * 
+		 * @param name The header name.
+		 * @return The header value, or <code>null</code> if it is absent.
+		 */
+		String getHeader(String name);
+		
+		/**
+		 * Gets the response body, already decoded from any content encoding.
+		 * 
+		 * @return The response body.  It may be empty, but is never <code>null</code>.
+		 * @throws IOException
+		 */
+		InputStream getBody() throws IOException;
+	}
+	
+	/**
+	 * Implemented by a <code>Response</code> that can report how long its connection took
+	 * to open, for <code>Instrumentation</code>.
+	 */
+	public static interface Timing {
+		
+		/**
+		 * Gets the time taken to open the connection.
+		 * 
+		 * @return The connect time in nanoseconds, or <code>0</code> if a pooled connection was used.
+		 */
+		long getConnectNanos();
+	}
+	
+	/**
+	 * Implemented by a <code>Transport</code> that can abandon a request while another thread waits
+	 * for its response.  <code>BLUEClient</code> uses it to free a caller whose hedged duplicate
+	 * answered first.
+	 */
+	public static interface Abortable {
+		
+		/**
+		 * Abandons the request the given thread is sending, if any, making its <code>execute</code>
+		 * call fail with an <code>AbortedException</code>.
+		 * 
+		 * @param thread The sending thread.
+		 * @return <code>true</code> if a request was abandoned; <code>false</code> otherwise.
+		 */
+		boolean abort(Thread thread);
+	}
+	
+	/**
+	 * Thrown by <code>execute</code> when the request was abandoned through <code>Abortable</code>
+	 * rather than failing on its own.
+	 */
+	@SuppressWarnings("serial")
+	public static class AbortedException extends IOException {
+		
+		/**
+		 * Creates an instance of AbortedException.
+		 * 
+		 * @param cause The failure the abandoned connection reported.
+		 */
+		public AbortedException(IOException cause) {
+			super("The request was aborted.", cause);
+		}
+	}
+	
+	/**
+	 * Sends a GET request.
+	 * 
+	 * @param request The request.
+	 * @return The response, which the caller must close.
+	 * @throws IOException If no response could be obtained.
+	 */
+	Response execute(Request request) throws IOException;
+}
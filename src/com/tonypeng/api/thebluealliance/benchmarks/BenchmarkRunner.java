@@ -0,0 +1,178 @@
+/*
+ * The Blue Alliance Java API - BenchmarkRunner.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal throughput benchmark harness.
+ * 
+ * <p>Each benchmark is warmed up, then measured over several timed iterations.  The report
+ * gives the mean time per operation with its standard deviation, and the bytes allocated
+ * per operation by the measuring thread, which is the same figure JMH's GC profiler reports
+ * as <code>gc.alloc.rate.norm</code>.</p>
+ */
+public class BenchmarkRunner {
+	
+	/**
+	 * A benchmarked operation.
+	 */
+	public static interface Benchmark {
+		
+		/**
+		 * Prepares the benchmark state for <code>param</code>.  Not measured.
+		 * 
+		 * @param param The benchmark parameter, such as a payload size.
+		 */
+		void setUp(int param) throws Exception;
+		
+		/**
+		 * Runs one operation.
+		 * 
+		 * @return A value derived from the work done, so it cannot be optimized away.
+		 */
+		Object run() throws Exception;
+	}
+	
+	private static class Entry {
+		final String _name;
+		final int[] _params;
+		final Benchmark _benchmark;
+		
+		Entry(String name, int[] params, Benchmark benchmark) {
+			_name = name;
+			_params = params;
+			_benchmark = benchmark;
+		}
+	}
+	
+	private final List<Entry> _entries = new ArrayList<Entry>();
+	private long _warmupMillis = 1000;
+	private long _iterationMillis = 1000;
+	private int _iterations = 5;
+	
+	/**
+	 * Used to keep benchmark results alive.
+	 */
+	public static volatile int sink;
+	
+	/**
+	 * Sets the warmup and measurement durations.
+	 * 
+	 * @param warmupMillis The warmup duration per benchmark, in milliseconds.
+	 * @param iterationMillis The duration of each measured iteration, in milliseconds.
+	 * @param iterations The number of measured iterations.
+	 * @return This runner.
+	 */
+	public BenchmarkRunner setDurations(long warmupMillis, long iterationMillis, int iterations) {
+		_warmupMillis = warmupMillis;
+		_iterationMillis = iterationMillis;
+		_iterations = iterations;
+		return this;
+	}
+	
+	/**
+	 * Adds a benchmark.
+	 * 
+	 * @param name The benchmark name.
+	 * @param params The parameters to run it with; each is reported separately.
+	 * @param benchmark The benchmark.
+	 * @return This runner.
+	 */
+	public BenchmarkRunner add(String name, int[] params, Benchmark benchmark) {
+		_entries.add(new Entry(name, params, benchmark));
+		return this;
+	}
+	
+	/**
+	 * Runs every benchmark whose name matches <code>filter</code> and prints the results.
+	 * 
+	 * @param filter A regular expression matched against benchmark names, or <code>null</code> for all.
+	 */
+	public void run(String filter)
+		throws Exception
+	{
+		Pattern pattern = filter == null ? null : Pattern.compile(filter);
+		
+		System.out.println(String.format("%-36s %8s %14s %12s %16s", "Benchmark", "Param", "us/op", "+-", "B/op"));
+		
+		for(Entry entry : _entries) {
+			if(pattern != null && !pattern.matcher(entry._name).find()) continue;
+			
+			for(int param : entry._params) {
+				entry._benchmark.setUp(param);
+				
+				measure(entry._benchmark, _warmupMillis);
+				
+				double[] usPerOp = new double[_iterations];
+				double bytesPerOp = 0;
+				
+				for(int i = 0; i < _iterations; i++) {
+					double[] result = measure(entry._benchmark, _iterationMillis);
+					usPerOp[i] = result[0];
+					bytesPerOp += result[1] / _iterations;
+				}
+				
+				double mean = 0;
+				for(double v : usPerOp) mean += v / usPerOp.length;
+				
+				double variance = 0;
+				for(double v : usPerOp) variance += (v - mean) * (v - mean) / Math.max(1, usPerOp.length - 1);
+				
+				System.out.println(String.format("%-36s %8d %14.3f %12.3f %16s", entry._name, param, mean, Math.sqrt(variance),
+						bytesPerOp < 0 ? "n/a" : String.format("%.0f", bytesPerOp)));
+			}
+		}
+	}
+	
+	private static double[] measure(Benchmark benchmark, long millis)
+		throws Exception
+	{
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = allocatedBytes(threadId);
+		long deadline = System.nanoTime() + millis * 1000000L;
+		long start = System.nanoTime();
+		long ops = 0;
+		int acc = 0;
+		
+		do {
+			Object result = benchmark.run();
+			acc += result == null ? 0 : System.identityHashCode(result);
+			ops++;
+		} while(System.nanoTime() < deadline);
+		
+		long elapsed = System.nanoTime() - start;
+		long allocatedAfter = allocatedBytes(threadId);
+		
+		sink = acc;
+		
+		double bytesPerOp = allocatedBefore < 0 ? -1 : (double)(allocatedAfter - allocatedBefore) / ops;
+		
+		return new double[] { elapsed / 1000.0 / ops, bytesPerOp };
+	}
+	
+	private static long allocatedBytes(long threadId) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean)bean;
+			
+			if(hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+				return hotspot.getThreadAllocatedBytes(threadId);
+			}
+		}
+		
+		return -1;
+	}
+}
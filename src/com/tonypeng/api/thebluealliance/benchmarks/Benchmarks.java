@@ -0,0 +1,423 @@
+/*
+ * The Blue Alliance Java API - Benchmarks.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance.benchmarks;
+
+import com.tonypeng.api.thebluealliance.BLUE;
+import com.tonypeng.api.thebluealliance.BLUEClient;
+import com.tonypeng.api.thebluealliance.FixtureTransport;
+import com.tonypeng.api.thebluealliance.KeyDictionary;
+import com.tonypeng.api.thebluealliance.MatchIndex;
+import com.tonypeng.api.thebluealliance.MatchTable;
+import com.tonypeng.api.thebluealliance.PowerRatings;
+import com.tonypeng.api.thebluealliance.SeasonSnapshot;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Benchmarks for the request, parse and model-mapping hot paths.
+ * 
+ * <p>Usage: <code>Benchmarks [filter] [--quick]</code>, where <code>filter</code> is a regular
+ * expression selecting benchmarks by name and <code>--quick</code> shortens every run for a
+ * smoke test.  Run with the same JVM flags before and after a change, and include both
+ * tables when proposing a performance change.</p>
+ */
+public class Benchmarks {
+	
+	static final int[] MATCH_COUNTS = { 10, 100, 1000, 10000 };
+	static final int[] SINGLE = { 1 };
+	
+	static final String EVENT_KEY = "2014bench";
+	
+	public static void main(String[] args)
+		throws Exception
+	{
+		String filter = null;
+		boolean quick = false;
+		
+		for(String arg : args) {
+			if(arg.equals("--quick")) {
+				quick = true;
+			} else {
+				filter = arg;
+			}
+		}
+		
+		BenchmarkRunner runner = new BenchmarkRunner();
+		
+		if(quick) runner.setDurations(200, 200, 3);
+		
+		register(runner);
+		
+		runner.run(filter);
+		
+		if(filter == null || Pattern.compile(filter).matcher("retained.season").find()) retainedSeason();
+	}
+	
+	/**
+	 * Reports the heap retained by a season of match lists, parsed with and without a key dictionary.
+	 */
+	static void retainedSeason()
+		throws Exception
+	{
+		int events = 100;
+		int matches = 100;
+		
+		long plain = retainedBytes(null, events, matches);
+		KeyDictionary dictionary = new KeyDictionary();
+		long interned = retainedBytes(dictionary, events, matches);
+		
+		System.out.println();
+		System.out.println(String.format("%-36s %8s %14s %12s %16s", "Retained heap", "Matches", "Plain B", "Interned B", "Saved B (est.)"));
+		System.out.println(String.format("%-36s %8d %14d %12d %16d", "retained.season", events * matches, plain, interned, dictionary.getBytesSaved()));
+	}
+	
+	private static long retainedBytes(KeyDictionary dictionary, int events, int matches)
+		throws Exception
+	{
+		FixtureTransport transport = new FixtureTransport();
+		
+		for(int i = 0; i < events; i++) {
+			String eventKey = "2014ev" + i;
+			transport.addFixture("/event/" + eventKey, Payloads.event(eventKey));
+			transport.addFixture("/event/" + eventKey + "/matches", Payloads.matches(eventKey, matches));
+		}
+		
+		BLUEClient client = BLUEClient.builder().appId("frc0:benchmarks:v1").transport(transport).keyDictionary(dictionary).build();
+		BLUE.Events.Event[] season = new BLUE.Events.Event[events];
+		
+		for(int i = 0; i < events; i++) {
+			season[i] = BLUE.Events.getEvent(client, "ev" + i, 2014);
+		}
+		
+		Object[] retained = new Object[events];
+		long before = usedHeap();
+		
+		for(int i = 0; i < events; i++) {
+			retained[i] = season[i].getMatches();
+		}
+		
+		long after = usedHeap();
+		
+		BenchmarkRunner.sink = System.identityHashCode(retained) + System.identityHashCode(season);
+		
+		return after - before;
+	}
+	
+	private static long usedHeap()
+		throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		
+		for(int i = 0; i < 4; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	static void register(BenchmarkRunner runner) {
+		runner.add("api.matches", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUEClient client;
+			
+			public void setUp(int matches) {
+				FixtureTransport transport = new FixtureTransport()
+					.addFixture("/event/" + EVENT_KEY + "/matches", Payloads.matches(EVENT_KEY, matches));
+				client = BLUEClient.builder().appId("frc0:benchmarks:v1").transport(transport).shareJsonTrees(true).build();
+			}
+			
+			public Object run() throws Exception {
+				return client.api("/event/" + EVENT_KEY + "/matches");
+			}
+		});
+		
+		runner.add("model.matches", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUE.Events.Event event;
+			
+			public void setUp(int matches) throws Exception {
+				FixtureTransport transport = new FixtureTransport()
+					.addFixture("/event/" + EVENT_KEY, Payloads.event(EVENT_KEY))
+					.addFixture("/event/" + EVENT_KEY + "/matches", Payloads.matches(EVENT_KEY, matches));
+				BLUEClient client = BLUEClient.builder().appId("frc0:benchmarks:v1").transport(transport).build();
+				event = BLUE.Events.getEvent(client, EVENT_KEY.substring(4), 2014);
+			}
+			
+			public Object run() throws Exception {
+				return event.getMatches();
+			}
+		});
+		
+		runner.add("parse.team", SINGLE, new ParseBenchmark() {
+			String payload(int param) {
+				return Payloads.team(254);
+			}
+		});
+		
+		runner.add("parse.event", SINGLE, new ParseBenchmark() {
+			String payload(int param) {
+				return Payloads.event(EVENT_KEY);
+			}
+		});
+		
+		runner.add("parse.matches", MATCH_COUNTS, new ParseBenchmark() {
+			String payload(int matches) {
+				return Payloads.matches(EVENT_KEY, matches);
+			}
+		});
+		
+		runner.add("map.team", SINGLE, new BenchmarkRunner.Benchmark() {
+			JSONObject tree;
+			
+			public void setUp(int param) throws Exception {
+				tree = (JSONObject)new JSONParser().parse(Payloads.team(254));
+			}
+			
+			public Object run() {
+				return BLUE.Teams.parseTeam(tree);
+			}
+		});
+		
+		runner.add("map.event", SINGLE, new BenchmarkRunner.Benchmark() {
+			JSONObject tree;
+			
+			public void setUp(int param) throws Exception {
+				tree = (JSONObject)new JSONParser().parse(Payloads.event(EVENT_KEY));
+			}
+			
+			public Object run() {
+				return BLUE.Events.parseEvent(tree);
+			}
+		});
+		
+		runner.add("map.matches", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			JSONArray tree;
+			
+			public void setUp(int matches) throws Exception {
+				tree = (JSONArray)new JSONParser().parse(Payloads.matches(EVENT_KEY, matches));
+			}
+			
+			public Object run() {
+				BLUE.Matches.Match[] matches = new BLUE.Matches.Match[tree.size()];
+				
+				for(int i = 0; i < matches.length; i++) {
+					matches[i] = BLUE.Matches.parseMatch((JSONObject)tree.get(i));
+				}
+				
+				return matches;
+			}
+		});
+		
+		runner.add("snapshot.write", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			SeasonSnapshot snapshot;
+			
+			public void setUp(int matches) throws Exception {
+				snapshot = snapshot(matches);
+			}
+			
+			public Object run() {
+				return snapshot.toByteArray();
+			}
+		});
+		
+		runner.add("snapshot.read", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUEClient client;
+			byte[] data;
+			
+			public void setUp(int matches) throws Exception {
+				client = BLUEClient.builder().appId("frc0:benchmarks:v1").transport(new FixtureTransport()).build();
+				data = snapshot(matches).toByteArray();
+			}
+			
+			public Object run() throws Exception {
+				return SeasonSnapshot.fromByteArray(client, data);
+			}
+		});
+		
+		runner.add("table.build", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUE.Matches.Match[] matches;
+			
+			public void setUp(int count) throws Exception {
+				matches = snapshot(count).getMatches();
+			}
+			
+			public Object run() {
+				return MatchTable.of(matches);
+			}
+		});
+		
+		runner.add("table.totals", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			MatchTable table;
+			
+			public void setUp(int count) throws Exception {
+				table = MatchTable.of(snapshot(count).getMatches());
+			}
+			
+			public Object run() {
+				return table.totals();
+			}
+		});
+		
+		runner.add("match.teams.copy", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUE.Matches.Match[] matches;
+			
+			public void setUp(int count) throws Exception {
+				matches = snapshot(count).getMatches();
+			}
+			
+			public Object run() {
+				long sum = 0;
+				
+				for(BLUE.Matches.Match match : matches) {
+					for(String key : match.getRedAlliance().getTeams()) sum += MatchTable.teamNumber(key);
+					for(String key : match.getBlueAlliance().getTeams()) sum += MatchTable.teamNumber(key);
+				}
+				
+				return sum;
+			}
+		});
+		
+		runner.add("match.teams.primitive", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUE.Matches.Match[] matches;
+			
+			public void setUp(int count) throws Exception {
+				matches = snapshot(count).getMatches();
+			}
+			
+			public Object run() {
+				long sum = 0;
+				
+				for(BLUE.Matches.Match match : matches) {
+					for(int i = 0; i < match.getRedTeamCount(); i++) sum += match.getRedTeam(i);
+					for(int i = 0; i < match.getBlueTeamCount(); i++) sum += match.getBlueTeam(i);
+				}
+				
+				return sum;
+			}
+		});
+		
+		runner.add("index.build", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			BLUE.Matches.Match[] matches;
+			
+			public void setUp(int count) throws Exception {
+				matches = snapshot(count).getMatches();
+			}
+			
+			public Object run() {
+				MatchIndex index = new MatchIndex();
+				index.addAll(matches);
+				return index;
+			}
+		});
+		
+		runner.add("index.team", MATCH_COUNTS, new BenchmarkRunner.Benchmark() {
+			MatchIndex index;
+			int team;
+			
+			public void setUp(int count) throws Exception {
+				BLUE.Matches.Match[] matches = snapshot(count).getMatches();
+				
+				index = new MatchIndex();
+				index.addAll(matches);
+				team = MatchTable.teamNumber(matches[0].getRedAlliance().getTeams()[0]);
+			}
+			
+			public Object run() {
+				return index.getMatchesForTeam(team);
+			}
+		});
+		
+		runner.add("opr.event", new int[] { 150 }, new BenchmarkRunner.Benchmark() {
+			BLUE.Matches.Match[] matches;
+			
+			public void setUp(int count) throws Exception {
+				matches = snapshot(count).getMatches();
+			}
+			
+			public Object run() {
+				PowerRatings ratings = new PowerRatings();
+				ratings.addMatches(matches);
+				return ratings.solve();
+			}
+		});
+		
+		runner.add("opr.season", new int[] { 12000 }, new BenchmarkRunner.Benchmark() {
+			int matches;
+			
+			public void setUp(int count) {
+				matches = count;
+			}
+			
+			public Object run() {
+				// A new instance each time, so conjugate gradient starts cold.
+				return season(matches).solve();
+			}
+		});
+	}
+	
+	/**
+	 * Generates a season of qualification matches: events of 40 teams drawn from 3,000, with
+	 * 80 matches each.
+	 */
+	static PowerRatings season(int matches) {
+		Random random = new Random(matches);
+		PowerRatings ratings = new PowerRatings();
+		int[] pool = new int[40];
+		int[] red = new int[3];
+		int[] blue = new int[3];
+		
+		for(int i = 0; i < matches; i++) {
+			if(i % 80 == 0) {
+				for(int j = 0; j < pool.length; j++) {
+					pool[j] = 1 + random.nextInt(3000);
+				}
+			}
+			
+			for(int j = 0; j < 3; j++) {
+				red[j] = pool[random.nextInt(pool.length)];
+				blue[j] = pool[random.nextInt(pool.length)];
+			}
+			
+			ratings.addMatch(red, random.nextInt(200), blue, random.nextInt(200));
+		}
+		
+		return ratings;
+	}
+	
+	static SeasonSnapshot snapshot(int matches)
+		throws Exception
+	{
+		FixtureTransport transport = new FixtureTransport()
+			.addFixture("/event/" + EVENT_KEY, Payloads.event(EVENT_KEY))
+			.addFixture("/event/" + EVENT_KEY + "/teams", Payloads.teams(80))
+			.addFixture("/event/" + EVENT_KEY + "/matches", Payloads.matches(EVENT_KEY, matches));
+		BLUEClient client = BLUEClient.builder().appId("frc0:benchmarks:v1").transport(transport).build();
+		BLUE.Events.Event event = BLUE.Events.getEvent(client, EVENT_KEY.substring(4), 2014);
+		
+		return new SeasonSnapshot(event.getTeams(), new BLUE.Events.Event[] { event }, event.getMatches());
+	}
+	
+	static abstract class ParseBenchmark implements BenchmarkRunner.Benchmark {
+		String _payload;
+		
+		abstract String payload(int param);
+		
+		public void setUp(int param) {
+			_payload = payload(param);
+		}
+		
+		public Object run() throws Exception {
+			return new JSONParser().parse(new StringReader(_payload));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * The Blue Alliance Java API - Payloads.java
+ * Copyright (c) 2014 Tony "untitled" Peng.  All rights reserved.
+ * <http://www.tonypeng.com/>
+ * 
+ * This file is part of the The Blue Alliance Java API project <http://git.io/JiJQhg>
+ * and is licensed under the MIT license <http://git.io/nTMQyw>.
+ */
+
+package com.tonypeng.api.thebluealliance.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates realistic API v2 response bodies for benchmarks.
+ */
+public final class Payloads {
+	
+	private Payloads() {
+	}
+	
+	/**
+	 * Generates a <code>/team/{key}</code> response.
+	 * 
+	 * @param teamNumber The team number.
+	 * @return The response body.
+	 */
+	public static String team(int teamNumber) {
+		StringBuilder sb = new StringBuilder(320);
+		appendTeam(sb, teamNumber);
+		return sb.toString();
+	}
+	
+	/**
+	 * Generates an <code>/event/{key}/teams</code> response.
+	 * 
+	 * @param count The number of teams.
+	 * @return The response body.
+	 */
+	public static String teams(int count) {
+		StringBuilder sb = new StringBuilder(count * 320);
+		sb.append('[');
+		
+		for(int i = 0; i < count; i++) {
+			if(i > 0) sb.append(", ");
+			appendTeam(sb, teamNumber(i));
+		}
+		
+		return sb.append(']').toString();
+	}
+	
+	/**
+	 * Generates an <code>/event/{key}</code> response.
+	 * 
+	 * @param eventKey The event key, such as <code>2014casj</code>.
+	 * @return The response body.
+	 */
+	public static String event(String eventKey) {
+		String code = eventKey.substring(4);
+		
+		return "{\"key\": \"" + eventKey + "\", \"end_date\": \"2014-03-29\", \"name\": \"Sample " + code + " Regional\", "
+				+ "\"short_name\": \"Sample " + code + "\", \"facebook_eid\": null, \"official\": true, "
+				+ "\"location\": \"San Jose, CA, USA\", \"event_code\": \"" + code + "\", \"year\": " + eventKey.substring(0, 4) + ", "
+				+ "\"event_type_string\": \"Regional\", \"start_date\": \"2014-03-27\", \"event_type\": 0}";
+	}
+	
+	/**
+	 * Generates an <code>/event/{key}/matches</code> response.  Matches draw teams from a
+	 * pool sized like a championship division, so team keys repeat as they do in real data.
+	 * 
+	 * @param eventKey The event key, such as <code>2014casj</code>.
+	 * @param count The number of matches.
+	 * @return The response body.
+	 */
+	public static String matches(String eventKey, int count) {
+		Random random = new Random(count);
+		StringBuilder sb = new StringBuilder(count * 330);
+		sb.append('[');
+		
+		for(int i = 0; i < count; i++) {
+			if(i > 0) sb.append(", ");
+			
+			sb.append("{\"comp_level\": \"qm\", \"match_number\": ").append(i + 1)
+				.append(", \"videos\": [], \"time_string\": null, \"set_number\": 1, \"key\": \"")
+				.append(eventKey).append("_qm").append(i + 1).append("\", \"time\": null, \"alliances\": {");
+			appendAlliance(sb, "blue", random);
+			sb.append(", ");
+			appendAlliance(sb, "red", random);
+			sb.append("}, \"event_key\": \"").append(eventKey).append("\"}");
+		}
+		
+		return sb.append(']').toString();
+	}
+	
+	private static void appendAlliance(StringBuilder sb, String color, Random random) {
+		sb.append('"').append(color).append("\": {\"score\": ").append(random.nextInt(200)).append(", \"teams\": [");
+		
+		for(int i = 0; i < 3; i++) {
+			if(i > 0) sb.append(", ");
+			sb.append("\"frc").append(teamNumber(random.nextInt(80))).append('"');
+		}
+		
+		sb.append("]}");
+	}
+	
+	private static void appendTeam(StringBuilder sb, int teamNumber) {
+		sb.append("{\"website\": \"http://www.team").append(teamNumber).append(".org\", \"name\": \"Sample Sponsors & High School ")
+			.append(teamNumber).append("\", \"locality\": \"San Jose\", \"rookie_year\": 2004, \"region\": \"CA\", ")
+			.append("\"team_number\": ").append(teamNumber).append(", \"location\": \"San Jose, CA, USA\", \"key\": \"frc")
+			.append(teamNumber).append("\", \"country_name\": \"USA\", \"nickname\": \"Team ").append(teamNumber).append("\"}");
+	}
+	
+	private static int teamNumber(int index) {
+		return 100 + index * 37;
+	}
+}